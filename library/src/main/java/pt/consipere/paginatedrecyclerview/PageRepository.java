@@ -0,0 +1,228 @@
+package pt.consipere.paginatedrecyclerview;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repository of pages that can be shared by several {@link PaginatedAdapter}s showing the same
+ * data source (for example the same feed in different tabs).
+ *
+ * Each page is kept once, keyed by its {@link Range}, and counts how many adapters are holding it.
+ * Requests for a page that is already being fetched are not sent again, the adapter just waits for
+ * the same result. A page is dropped as soon as no adapter holds it anymore, and a page that fails
+ * to load is dropped right away so it can be requested again.
+ *
+ * The repository of a data source is registered while some adapter is using it (see
+ * {@link PaginatedAdapter#setPageRepository(PageRepository)}). Once the last one stops using it,
+ * it is forgotten together with its loader, so the next {@link #get(Object, PageLoader)} creates a
+ * new one. A repository that no adapter ever uses is never registered.
+ *
+ * All the methods must be called on the main thread. The {@link PageLoader} may deliver the pages
+ * on any thread.
+ *
+ * @param <T> the type of the items of the pages
+ */
+public class PageRepository<T> {
+
+    private static final Map<Object, PageRepository> repositories = new HashMap<>();
+
+    private final Object dataSource;
+    private PageLoader<T> loader;
+    private int users = 0;
+    private final Map<Range, Entry<T>> entries = new HashMap<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private PageRepository(Object dataSource, PageLoader<T> loader) {
+        this.dataSource = dataSource;
+        this.loader = loader;
+    }
+
+    /**
+     * @param dataSource the key of the data source, adapters using the same key will share
+     *                   the same pages
+     * @param loader the loader used to fetch the pages, replaces the loader given before for the
+     *               same data source
+     * @return the repository of the data source, or a new one if no adapter is using it. The new
+     *         repository is only shared once it is given to an adapter.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PageRepository<T> get(Object dataSource, PageLoader<T> loader) {
+        PageRepository<T> repository = repositories.get(dataSource);
+        if (repository == null) {
+            return new PageRepository<>(dataSource, loader);
+        }
+        repository.loader = loader;
+        return repository;
+    }
+
+    /**
+     * Registers one more adapter using the repository. The repository is registered for its data
+     * source unless another one already is.
+     */
+    void attach() {
+        users++;
+        if (!repositories.containsKey(dataSource)) {
+            repositories.put(dataSource, this);
+        }
+    }
+
+    /**
+     * Forgets the repository once no adapter is using it anymore
+     */
+    void detach() {
+        users--;
+        if (users <= 0 && repositories.get(dataSource) == this) {
+            repositories.remove(dataSource);
+        }
+    }
+
+    /**
+     * Holds the page of the given range. The callback is called on the main thread once the page
+     * is available: on the next message if it is already in memory, or once it is fetched
+     * otherwise. Every page delivered to a callback must be given back with
+     * {@link #release(Range)}. If the page fails to load, {@link Callback#onError(Range, Throwable)}
+     * is called instead and nothing has to be given back.
+     */
+    public void acquire(final Range range, Callback<T> callback) {
+        Entry<T> entry = entries.get(range);
+        if (entry != null) {
+            //the callback isn't called right away since this is usually called from a scroll
+            //callback, where the adapter shouldn't be changed
+            entry.waiting.add(callback);
+            if (entry.page != null) {
+                postDelivery(range, entry.page);
+            }
+            return;
+        }
+
+        final Entry<T> loading = new Entry<>();
+        loading.waiting.add(callback);
+        entries.put(range, loading);
+        loader.loadPage(range, new Callback<T>() {
+            @Override
+            public void onPageLoaded(Range loadedRange, List<T> page) {
+                postDelivery(range, page);
+            }
+
+            @Override
+            public void onError(Range failedRange, final Throwable error) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        fail(range, loading, error);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops waiting for a page that was requested with {@link #acquire(Range, Callback)} but
+     * wasn't delivered yet.
+     */
+    public void cancel(Range range, Callback<T> callback) {
+        Entry<T> entry = entries.get(range);
+        if (entry != null && entry.waiting.remove(callback)) {
+            removeIfUnused(range, entry);
+        }
+    }
+
+    /**
+     * Gives back a page delivered by {@link #acquire(Range, Callback)}. The page is dropped once
+     * there are no more adapters holding it.
+     */
+    public void release(Range range) {
+        Entry<T> entry = entries.get(range);
+        if (entry != null) {
+            entry.references--;
+            removeIfUnused(range, entry);
+        }
+    }
+
+    /**
+     * @return the number of pages that are held by at least one adapter
+     */
+    public int getPageCount() {
+        int count = 0;
+        for (Entry<T> entry : entries.values()) {
+            if (entry.page != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void postDelivery(final Range range, final List<T> page) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                deliver(range, page);
+            }
+        });
+    }
+
+    private void deliver(Range range, List<T> page) {
+        Entry<T> entry = entries.get(range);
+        if (entry == null) {
+            return;
+        }
+        entry.page = page;
+        List<Callback<T>> waiting = new ArrayList<>(entry.waiting);
+        entry.waiting.clear();
+        entry.references += waiting.size();
+        for (Callback<T> callback : waiting) {
+            callback.onPageLoaded(range, page);
+        }
+        removeIfUnused(range, entry);
+    }
+
+    /**
+     * Drops the entry of a page that failed to load so the next request fetches it again
+     */
+    private void fail(Range range, Entry<T> entry, Throwable error) {
+        if (entries.get(range) != entry) {
+            return;
+        }
+        entries.remove(range);
+        List<Callback<T>> waiting = new ArrayList<>(entry.waiting);
+        entry.waiting.clear();
+        for (Callback<T> callback : waiting) {
+            callback.onError(range, error);
+        }
+    }
+
+    private void removeIfUnused(Range range, Entry<T> entry) {
+        if (entry.references <= 0 && entry.waiting.isEmpty()) {
+            entries.remove(range);
+        }
+    }
+
+    private static class Entry<T> {
+        private List<T> page;
+        private int references = 0;
+        private List<Callback<T>> waiting = new ArrayList<>();
+    }
+
+    /**
+     * Interface that fetches the pages of the data source
+     */
+    public interface PageLoader<T> {
+        /**
+         * @param range the range of items to fetch
+         * @param callback should be called with the items once they are fetched, or with the
+         *                 error if they can't be, on any thread
+         */
+        void loadPage(Range range, Callback<T> callback);
+    }
+
+    public interface Callback<T> {
+        void onPageLoaded(Range range, List<T> page);
+
+        void onError(Range range, Throwable error);
+    }
+}
@@ -0,0 +1,106 @@
+package pt.consipere.paginatedrecyclerview;
+
+/**
+ * Chooses the size of the next page when the adaptive page size is enabled
+ * (see {@link PaginatedRecyclerView#setAdaptivePageSize(boolean)}).
+ *
+ * The next page should hold at least {@link #SCREENS_PER_PAGE} screens of rows plus the rows the
+ * user scrolls through while the page is being fetched. The fetch time is predicted from a rolling
+ * average of the throughput of the previous requests (items delivered per millisecond), so for a
+ * page of n items: n = SCREENS_PER_PAGE * screenRows + speed * n / throughput, which gives
+ * n = SCREENS_PER_PAGE * screenRows / (1 - speed / throughput).
+ *
+ * The times are given by the caller (in milliseconds, from any monotonic clock), so the tuner
+ * doesn't depend on the Android classes.
+ *
+ * Before anything is measured the minimum size is used, so the first page arrives as soon as
+ * possible.
+ */
+public class PageSizeTuner {
+
+    private static final int SCREENS_PER_PAGE = 2;
+    private static final float SMOOTHING = 0.3f;
+    private static final long SCROLL_RESET_MS = 500;
+
+    private int minPageSize;
+    private int maxPageSize;
+
+    private int rowsPerScreen = 0;
+    private float scrollSpeed = 0; //rows per millisecond
+    private float throughput = -1; //items per millisecond
+    private long lastScrollTime = -1;
+    private long requestStart = -1;
+    private int requestSize = 0;
+
+    public PageSizeTuner(int minPageSize, int maxPageSize) {
+        setBounds(minPageSize, maxPageSize);
+    }
+
+    public void setBounds(int minPageSize, int maxPageSize) {
+        this.minPageSize = Math.max(1, minPageSize);
+        this.maxPageSize = Math.max(this.minPageSize, maxPageSize);
+    }
+
+    /**
+     * @param rows the number of rows currently laid out in the viewport
+     * @param dy the scrolled distance in pixels
+     * @param rowHeight the average height of the rows in pixels
+     * @param now the time of the scroll
+     */
+    public void onScrolled(int rows, int dy, float rowHeight, long now) {
+        rowsPerScreen = rows;
+        if (dy == 0 || rowHeight <= 0) {
+            return;
+        }
+
+        long elapsed = now - lastScrollTime;
+        lastScrollTime = now;
+        if (elapsed <= 0) {
+            return;
+        }
+        float speed = Math.abs(dy) / rowHeight / elapsed;
+        scrollSpeed = elapsed > SCROLL_RESET_MS ? 0 : average(scrollSpeed, speed);
+    }
+
+    /**
+     * Called when a page is requested, starts measuring the time until {@link #onPageLoaded(long)}
+     *
+     * @return the size of the requested page
+     */
+    public int onPageRequested(long now) {
+        requestStart = now;
+        requestSize = nextPageSize();
+        return requestSize;
+    }
+
+    public void onPageLoaded(long now) {
+        if (requestStart < 0 || requestSize == 0) {
+            return;
+        }
+        long latency = Math.max(1, now - requestStart);
+        float measured = (float) requestSize / latency;
+        throughput = throughput < 0 ? measured : average(throughput, measured);
+        requestStart = -1;
+    }
+
+    /**
+     * @return the size of the next page between the min and max page size
+     */
+    public int nextPageSize() {
+        int size;
+        if (rowsPerScreen == 0 || throughput < 0) {
+            size = minPageSize;
+
+        } else if (scrollSpeed >= throughput) {
+            size = maxPageSize;
+
+        } else {
+            size = (int) Math.ceil(rowsPerScreen * SCREENS_PER_PAGE / (1 - scrollSpeed / throughput));
+        }
+        return Math.min(maxPageSize, Math.max(minPageSize, size));
+    }
+
+    private static float average(float current, float measured) {
+        return current + SMOOTHING * (measured - current);
+    }
+}
@@ -1,13 +1,20 @@
 package pt.consipere.paginatedrecyclerview;
 
 import android.support.v7.widget.RecyclerView;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Set;
 import java.util.TreeMap;
 
 
@@ -22,16 +29,54 @@ import java.util.TreeMap;
  * if pageSize = 20 and maxPagesInMemory = 3 then for pages 1,2,3 meaning the first key of the map
  * will be 20, the position 0 will be 20 = 0 + 20 (offset) and the position 60 will be 60 + 20 = 80.
  *
+ * The keys of the map are the simulated positions of the first item of each page, and each page
+ * starts right after the previous one, so the pages don't need to have the same size (for example
+ * when the adaptive page size is used).
+ *
  * @param <T> the type of adapter we are expecting
  */
 public abstract class PaginatedAdapter<T> extends RecyclerView.Adapter {
 
     protected static final int LOADING_VIEW = Integer.MAX_VALUE;
+    private static final long DEFAULT_ROW_COST_NANOS = 500000;
     private NavigableMap<Integer, List<T>> rangeMap = new TreeMap<>();
     private int maxPagesInMemory = 3;
     private int pageSize = 20;
     private int loadingDirection = 0;
     private int layoutMoreProgress;
+    private KeyProvider<T> keyProvider;
+    private Map<Object, Integer> keyIndex = new HashMap<>();
+    private int indexShift = 0;
+    private int emptyOffset = 0;
+    private boolean indexStale = false;
+    private PageRepository<T> pageRepository;
+    private boolean repositoryAttached = false;
+    private Map<List<T>, Range> sharedPages = new IdentityHashMap<>();
+    private Set<List<T>> grownPages =
+            Collections.newSetFromMap(new IdentityHashMap<List<T>, Boolean>());
+    private int nextPageSize = 0;
+
+    private boolean chunkedPublishing = false;
+    private long frameBudgetNanos = 4000000;
+    private long rowCostNanos = DEFAULT_ROW_COST_NANOS;
+    private long lastCreateNanos = 0;
+    //the page being published across frames, kept as given so a shared page isn't copied
+    private List<T> publishingElements;
+    private int publishedCount;
+    private int publishingPageStart;
+    private boolean publishingUp;
+    private boolean hideLoadingWhenPublished = false;
+    private PageStream stream;
+    private Choreographer choreographer;
+    private final Choreographer.FrameCallback publishCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            publishBatch(getBatchSize());
+            if (publishingElements != null) {
+                choreographer.postFrameCallback(this);
+            }
+        }
+    };
 
     /**
      * @param position the position of the item in the adapter
@@ -59,9 +104,7 @@ public abstract class PaginatedAdapter<T> extends RecyclerView.Adapter {
     @Override
     public int getItemCount() {
         int loadingCount = loadingDirection > 0 ? 1 : 0;
-        return rangeMap.size() > 0
-                ? getRealCount() + rangeMap.firstKey() + loadingCount
-                : getRealCount() + loadingCount;
+        return getRealCount() + getOffset() + loadingCount;
     }
 
     /**
@@ -80,8 +123,9 @@ public abstract class PaginatedAdapter<T> extends RecyclerView.Adapter {
      * @return the item at the specified position.
      */
     public T getItem(int position){
-        int index = getOffset() + ((int) Math.floor(position/pageSize) * pageSize);
-        return rangeMap.get(index).get(position % pageSize);
+        int simulatedPosition = getOffset() + position;
+        Map.Entry<Integer, List<T>> page = rangeMap.floorEntry(simulatedPosition);
+        return page.getValue().get(simulatedPosition - page.getKey());
     }
 
     /**
@@ -97,7 +141,10 @@ public abstract class PaginatedAdapter<T> extends RecyclerView.Adapter {
                     .inflate(layoutMoreProgress, parent, false);
             return new RecyclerView.ViewHolder(view) {};
         }
-        return onCreatePageViewHolder(parent, viewType);
+        long start = System.nanoTime();
+        RecyclerView.ViewHolder holder = onCreatePageViewHolder(parent, viewType);
+        lastCreateNanos = System.nanoTime() - start;
+        return holder;
     }
 
     /**
@@ -113,7 +160,12 @@ public abstract class PaginatedAdapter<T> extends RecyclerView.Adapter {
     public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
         int paginatedPosition = position - getOffset();
         if (paginatedPosition > -1) {
+            long start = System.nanoTime();
             onBindPageViewHolder(holder, paginatedPosition);
+            //cost of showing a row (create + bind) used to size the batches of chunked publishing
+            long cost = System.nanoTime() - start + lastCreateNanos;
+            rowCostNanos += (cost - rowCostNanos) / 4;
+            lastCreateNanos = 0;
         }
     }
 
@@ -123,17 +175,517 @@ public abstract class PaginatedAdapter<T> extends RecyclerView.Adapter {
      *                  based on the loading direction.
      */
     public void addElements(List<T> elements){
-        int pageStart = 0;
+        sealStream();
+        finishPublishing();
+        boolean up = (rangeMap.size() > 0 || emptyOffset > 0)
+                && loadingDirection != RecyclerViewScrollListener.LOAD_DOWN;
+
+        if (chunkedPublishing) {
+            //publish the rows next to the ones being shown now and leave the rest for the next frames
+            publishingElements = elements;
+            publishedCount = 0;
+            publishingUp = up;
+            publishingPageStart = up ? getOffset() : getEnd();
+            publishBatch(getBatchSize());
+            if (publishingElements != null) {
+                if (choreographer == null) {
+                    choreographer = Choreographer.getInstance();
+                }
+                choreographer.postFrameCallback(publishCallback);
+            }
+            return;
+        }
+
+        int pageStart = up ? getOffset() - elements.size() : getEnd();
+        rangeMap.put(pageStart, elements);
+        indexPage(pageStart, elements);
+    }
+
+    /**
+     * Opens a page that will receive its elements as they arrive (for example while a chunked
+     * response is being decoded) through {@link PageStream#append(List)}, instead of all at once
+     * through {@link #addElements(List)}. Like {@link #addElements(List)} the page is added in the
+     * loading direction.
+     *
+     * When loading down every call to {@link PageStream#append(List)} shows the new rows right away.
+     * When loading up the rows next to the ones being shown are the last ones of the page, so the
+     * elements are only added when the page is sealed with {@link PageStream#seal()}.
+     *
+     * Must be called on the main thread, as well as the methods of the returned stream.
+     *
+     * @return the stream of the new page. Any page that was still open is sealed.
+     */
+    public PageStream openPage() {
+        sealStream();
+        finishPublishing();
+        stream = new PageStream((rangeMap.size() > 0 || emptyOffset > 0)
+                && loadingDirection != RecyclerViewScrollListener.LOAD_DOWN);
+        return stream;
+    }
+
+    private void sealStream() {
+        if (stream != null) {
+            stream.seal();
+        }
+    }
+
+    /**
+     * Shows the next count rows of the page being published. When loading up the rows are taken
+     * from the end of the page, since those are the ones next to the rows being shown.
+     * Until the page is fully published a view of its published rows is kept in memory, the page
+     * itself replaces it on the last batch.
+     */
+    private void publishBatch(int count) {
+        List<T> elements = publishingElements;
+        boolean nothingShown = rangeMap.size() == 0;
+        if (publishedCount > 0) {
+            rangeMap.remove(publishingPageStart);
+        }
+        int size = Math.min(count, elements.size() - publishedCount);
+        int from = publishingUp ? elements.size() - publishedCount - size : publishedCount;
+        List<T> batch = elements.subList(from, from + size);
+        publishedCount += size;
+
+        if (publishingUp) {
+            publishingPageStart -= size;
+            indexPage(publishingPageStart, batch);
+            //the number of items doesn't change when loading up, the empty rows above the
+            //offset (and the loading row) become the new rows
+            int changedStart = Math.max(0, publishingPageStart - 1);
+            notifyItemRangeChanged(changedStart, publishingPageStart + size - changedStart);
+
+        } else if (nothingShown) {
+            //nothing is shown yet, inserting in front of the loading row would keep it on top
+            indexPage(publishingPageStart, batch);
+            notifyDataSetChanged();
+
+        } else {
+            int position = publishingPageStart + from;
+            indexPage(position, batch);
+            notifyItemRangeInserted(position, size);
+        }
+
+        if (publishedCount < elements.size()) {
+            rangeMap.put(publishingPageStart, publishingUp
+                    ? elements.subList(elements.size() - publishedCount, elements.size())
+                    : elements.subList(0, publishedCount));
+
+        } else {
+            rangeMap.put(publishingPageStart, elements);
+            publishingElements = null;
+            if (hideLoadingWhenPublished) {
+                hideLoadingWhenPublished = false;
+                setLoadingDirection(RecyclerViewScrollListener.NOT_LOADING);
+            }
+        }
+    }
+
+    /**
+     * Publishes right away the rest of the page that is being published across frames, if any.
+     * Also called when the view showing the adapter is detached, so no frame callback is left
+     * holding the adapter.
+     */
+    void finishPublishing() {
+        if (publishingElements != null) {
+            choreographer.removeFrameCallback(publishCallback);
+            publishBatch(publishingElements.size() - publishedCount);
+        }
+    }
+
+    /**
+     * @return the number of rows that can be published in one frame without going over the
+     *         frame budget, based on the time the last rows took to be created and bound
+     */
+    private int getBatchSize() {
+        return (int) Math.max(1, frameBudgetNanos / Math.max(1, rowCostNanos));
+    }
+
+    /**
+     * Replaces the item with the given key and notifies the change of that single position.
+     * If the new value has a different key, the item is found by the new key from then on.
+     * Requires a {@link KeyProvider} to be set before the pages are added.
+     *
+     * @param key the key of the item, as returned by {@link KeyProvider#getKey(Object)}
+     * @param newValue the new value of the item
+     * @return true if the item is in memory and was updated, false otherwise
+     */
+    public boolean updateItem(Object key, T newValue) {
+        finishPublishing();
+        Integer position = findPosition(key);
+        if (position == null) {
+            return false;
+        }
+        int pageStart = rangeMap.floorKey(position);
+        ownPage(pageStart).set(position - pageStart, newValue);
+
+        Object newKey = keyProvider.getKey(newValue);
+        if (!key.equals(newKey)) {
+            keyIndex.remove(key);
+            keyIndex.put(newKey, position - indexShift);
+        }
+        notifyItemChanged(position);
+        return true;
+    }
+
+    /**
+     * Removes the item with the given key and notifies the removal of that single position.
+     * Requires a {@link KeyProvider} to be set before the pages are added.
+     *
+     * @param key the key of the item, as returned by {@link KeyProvider#getKey(Object)}
+     * @return true if the item was in memory and was removed, false otherwise
+     */
+    public boolean removeItem(Object key) {
+        Integer position = findPosition(key);
+        if (position == null) {
+            return false;
+        }
+        removeItems(position, 1);
+        return true;
+    }
+
+    /**
+     * Inserts new items without reloading the pages in memory (for example new items arriving at
+     * the top of a real time feed).
+     *
+     * If the position is before the {@link #getOffset()} the items are not kept in memory, the
+     * pages are only moved down so the offset keeps matching the items of the data source.
+     * If the position is inside the pages the items are added to the page that holds that position.
+     * Pages that grow too big are only split on the next load (see {@link #setLoadingDirection(int)}).
+     * Positions after the last item in memory are ignored since they will be fetched later.
+     *
+     * Since the insertion is notified with {@link #notifyItemRangeInserted(int, int)} the items
+     * being shown keep their place on the screen.
+     *
+     * @param position the simulated position of the first inserted item
+     * @param items the items to insert
+     */
+    public void insertItems(int position, List<T> items) {
+        finishPublishing();
+        int count = items.size();
+        if (count == 0 || rangeMap.size() == 0 || position < 0 || position > getEnd()) {
+            return;
+        }
 
-        if (rangeMap.size() > 0) {
-            if (loadingDirection == RecyclerViewScrollListener.LOAD_DOWN) {
-                pageStart = rangeMap.lastKey() + pageSize;
+        if (position < getOffset()) {
+            shiftPages(rangeMap, count);
+            indexShift += count;
+
+        } else {
+            int pageStart = rangeMap.floorKey(position);
+            List<T> page = ownPage(pageStart);
+            page.addAll(position - pageStart, items);
+            grownPages.add(page);
+            relayoutPages(pageStart, position);
+        }
+        notifyItemRangeInserted(position, count);
+    }
+
+    /**
+     * Removes items without reloading the pages in memory. Works like
+     * {@link #insertItems(int, List)}: the part before the {@link #getOffset()} only moves the
+     * pages up and the part inside the pages is removed from them.
+     *
+     * @param position the simulated position of the first removed item
+     * @param count the number of items to remove
+     */
+    public void removeItems(int position, int count) {
+        finishPublishing();
+        if (count <= 0 || rangeMap.size() == 0 || position < 0 || position >= getEnd()) {
+            return;
+        }
+        int offset = getOffset();
+        int from = Math.max(position, offset);
+        int to = Math.min(position + count, getEnd());
+        int frontCount = Math.max(0, Math.min(position + count, offset) - position);
+
+        if (from < to) {
+            int firstPage = rangeMap.floorKey(from);
+            for (int pageStart : new ArrayList<>(rangeMap.subMap(firstPage, true, to, false).keySet())) {
+                List<T> page = ownPage(pageStart);
+                List<T> removed = page.subList(Math.max(from, pageStart) - pageStart,
+                        Math.min(to, pageStart + page.size()) - pageStart);
+                if (keyProvider != null) {
+                    for (T item : removed) {
+                        keyIndex.remove(keyProvider.getKey(item));
+                    }
+                }
+                removed.clear();
+            }
+            relayoutPages(firstPage, from);
+        }
+
+        if (frontCount > 0) {
+            if (rangeMap.size() == 0) {
+                emptyOffset -= frontCount;
+            }
+            shiftPages(rangeMap, -frontCount);
+            indexShift -= frontCount;
+        }
+
+        int removedCount = frontCount + Math.max(0, to - from);
+        notifyItemRangeRemoved(frontCount > 0 ? position : from, removedCount);
+    }
+
+    /**
+     * Moves every page of the given view of {@link #rangeMap} by delta positions.
+     */
+    private void shiftPages(NavigableMap<Integer, List<T>> pages, int delta) {
+        List<Map.Entry<Integer, List<T>>> entries = new ArrayList<>(pages.entrySet());
+        pages.clear();
+        for (Map.Entry<Integer, List<T>> entry : entries) {
+            rangeMap.put(entry.getKey() + delta, entry.getValue());
+        }
+    }
+
+    /**
+     * Recalculates the keys of the pages starting at pageStart after their size changed, so that
+     * each page starts right after the previous one. Empty pages are dropped. The index is updated
+     * for the items from changedPosition on, since the ones before it didn't move.
+     */
+    private void relayoutPages(int pageStart, int changedPosition) {
+        NavigableMap<Integer, List<T>> tail = rangeMap.tailMap(pageStart, true);
+        List<List<T>> pages = new ArrayList<>(tail.values());
+        tail.clear();
+        //when every item in memory is removed the rows above them must stay
+        emptyOffset = pageStart;
+        for (List<T> page : pages) {
+            if (!page.isEmpty()) {
+                rangeMap.put(pageStart, page);
+                pageStart += page.size();
 
             } else {
-                pageStart = rangeMap.firstKey() - pageSize;
+                grownPages.remove(page);
+            }
+        }
+
+        if (keyProvider != null && rangeMap.size() > 0 && changedPosition < getEnd()) {
+            for (Map.Entry<Integer, List<T>> entry
+                    : rangeMap.tailMap(rangeMap.floorKey(changedPosition), true).entrySet()) {
+                List<T> page = entry.getValue();
+                for (int i = Math.max(0, changedPosition - entry.getKey()); i < page.size(); i++) {
+                    keyIndex.put(keyProvider.getKey(page.get(i)), entry.getKey() + i - indexShift);
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the pages that grew past twice the {@link #pageSize} because of
+     * {@link #insertItems(int, List)}, so that each page in memory keeps a similar size. The pages
+     * that were loaded with a bigger size (see {@link #setNextPageSize(int)}) are kept whole.
+     */
+    private void rebalancePages() {
+        for (Map.Entry<Integer, List<T>> entry : new ArrayList<>(rangeMap.entrySet())) {
+            List<T> page = entry.getValue();
+            if (grownPages.contains(page) && page.size() > pageSize * 2
+                    && (stream == null || page != stream.page)) {
+                rangeMap.remove(entry.getKey());
+                grownPages.remove(page);
+                releasePage(page);
+                for (int i = 0; i < page.size(); i += pageSize) {
+                    rangeMap.put(entry.getKey() + i,
+                            new ArrayList<>(page.subList(i, Math.min(i + pageSize, page.size()))));
+                }
             }
         }
-        rangeMap.put(pageStart, elements);
+    }
+
+    /**
+     * @return the simulated position of the item with the given key or null if the item is not
+     *         in memory. The index is only rebuilt here after it was dropped (for example when
+     *         the {@link KeyProvider} changes).
+     */
+    private Integer findPosition(Object key) {
+        if (indexStale) {
+            keyIndex.clear();
+            indexShift = 0;
+            indexStale = false;
+            for (Map.Entry<Integer, List<T>> entry : rangeMap.entrySet()) {
+                indexPage(entry.getKey(), entry.getValue());
+            }
+        }
+        Integer position = keyIndex.get(key);
+        return position == null ? null : position + indexShift;
+    }
+
+    private void indexPage(int pageStart, List<T> page) {
+        if (keyProvider == null) {
+            return;
+        }
+        for (int i = 0; i < page.size(); i++) {
+            keyIndex.put(keyProvider.getKey(page.get(i)), pageStart + i - indexShift);
+        }
+    }
+
+    private void removePage(int pageStart) {
+        List<T> page = rangeMap.remove(pageStart);
+        if (stream != null && page == stream.page) {
+            //the rest of the page would no longer be next to the pages in memory
+            stream = null;
+        }
+        if (rangeMap.size() == 0) {
+            emptyOffset = 0;
+        }
+        grownPages.remove(page);
+        if (keyProvider != null && page != null) {
+            for (T item : page) {
+                keyIndex.remove(keyProvider.getKey(item));
+            }
+        }
+        releasePage(page);
+    }
+
+    /**
+     * @return the page starting at pageStart, copying it first if it is shared with other adapters
+     *         through the {@link PageRepository} so that changing it won't affect them
+     */
+    private List<T> ownPage(int pageStart) {
+        List<T> page = rangeMap.get(pageStart);
+        if (sharedPages.containsKey(page)) {
+            List<T> copy = new ArrayList<>(page);
+            rangeMap.put(pageStart, copy);
+            releasePage(page);
+            return copy;
+        }
+        return page;
+    }
+
+    /**
+     * Gives the page back to the {@link PageRepository} if it came from there
+     */
+    private void releasePage(List<T> page) {
+        Range range = sharedPages.remove(page);
+        if (range != null && pageRepository != null) {
+            pageRepository.release(range);
+        }
+    }
+
+    /**
+     * Fetches the next range in the given direction through the {@link PageRepository} and adds
+     * it to the adapter. If the adapter changed while the page was being fetched (for example
+     * because of {@link #clearAll()} or {@link #insertItems(int, List)}), or stopped using the
+     * repository, the page is given back and not added.
+     *
+     * @param direction the direction of the page, should be one of
+     *                  {@link RecyclerViewScrollListener#LOAD_DOWN} or
+     *                  {@link RecyclerViewScrollListener#LOAD_UP}
+     * @param onLoaded called on the main thread once the request is over, even if the page wasn't
+     *                 added or failed to load, so the loading state can be reset
+     */
+    public void loadFromRepository(final int direction, final Runnable onLoaded) {
+        final PageRepository<T> repository = pageRepository;
+        if (repository == null) {
+            return;
+        }
+        final Range range = getNextRange(direction);
+        repository.acquire(range, new PageRepository.Callback<T>() {
+            @Override
+            public void onPageLoaded(Range loadedRange, List<T> page) {
+                if (repository != pageRepository || !repositoryAttached
+                        || !isNextRange(range, direction)) {
+                    repository.release(range);
+
+                } else {
+                    addElements(page);
+                    //a page published across frames is only in memory once fully published
+                    if (containsPage(page) || page == publishingElements) {
+                        sharedPages.put(page, range);
+
+                    } else {
+                        repository.release(range);
+                    }
+                }
+                if (onLoaded != null) {
+                    onLoaded.run();
+                }
+            }
+
+            @Override
+            public void onError(Range failedRange, Throwable error) {
+                if (onLoaded != null) {
+                    onLoaded.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return true if the given list (and not just an equal one) is one of the pages in memory
+     */
+    private boolean containsPage(List<T> page) {
+        for (List<T> stored : rangeMap.values()) {
+            if (stored == page) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the range is still the next one in the given direction
+     */
+    private boolean isNextRange(Range range, int direction) {
+        return range.equals(getNextRange(direction));
+    }
+
+    /**
+     * @param pageRepository the repository used by {@link #loadFromRepository(int, Runnable)}, the
+     *                       pages held from a previous repository are given back to it. Set it to
+     *                       null once the adapter isn't used anymore so the repository (and its
+     *                       loader) can be forgotten.
+     */
+    public void setPageRepository(PageRepository<T> pageRepository) {
+        detachRepository();
+        this.pageRepository = pageRepository;
+        attachRepository();
+    }
+
+    /**
+     * Registers the adapter as a user of its {@link PageRepository}, called when the view showing
+     * it is attached again
+     */
+    void attachRepository() {
+        if (pageRepository != null && !repositoryAttached) {
+            pageRepository.attach();
+            repositoryAttached = true;
+        }
+    }
+
+    /**
+     * Stops using the {@link PageRepository}, so it is forgotten if no other adapter uses it. The
+     * pages held from it are copied and given back, so they are dropped from the repository once
+     * the other adapters don't hold them either.
+     */
+    void detachRepository() {
+        releaseSharedPages();
+        if (pageRepository != null && repositoryAttached) {
+            pageRepository.detach();
+            repositoryAttached = false;
+        }
+    }
+
+    public PageRepository<T> getPageRepository() {
+        return pageRepository;
+    }
+
+    /**
+     * Copies the pages that came from the {@link PageRepository} and gives them back to it. The
+     * page being published across frames is published first so it is copied whole.
+     */
+    private void releaseSharedPages() {
+        finishPublishing();
+        for (int pageStart : new ArrayList<>(rangeMap.keySet())) {
+            ownPage(pageStart);
+        }
+    }
+
+    /**
+     * @return the simulated position right after the last item in memory
+     */
+    private int getEnd() {
+        return rangeMap.size() > 0
+                ? rangeMap.lastKey() + rangeMap.lastEntry().getValue().size()
+                : emptyOffset;
     }
 
     /**
@@ -147,13 +699,88 @@ public abstract class PaginatedAdapter<T> extends RecyclerView.Adapter {
      * Clear the colleciton of lists (should be called when refreshing the list)
      */
     public void clearAll() {
+        if (publishingElements != null) {
+            choreographer.removeFrameCallback(publishCallback);
+            //only a view of its published rows is in memory
+            releasePage(publishingElements);
+            publishingElements = null;
+        }
+        if (hideLoadingWhenPublished) {
+            hideLoadingWhenPublished = false;
+            loadingDirection = RecyclerViewScrollListener.NOT_LOADING;
+        }
+        stream = null;
+        for (List<T> page : rangeMap.values()) {
+            releasePage(page);
+        }
         rangeMap.clear();
+        grownPages.clear();
+        emptyOffset = 0;
+        nextPageSize = 0;
+        keyIndex.clear();
+        indexShift = 0;
+        indexStale = false;
+    }
+
+    /**
+     * @param keyProvider the provider of the keys used by {@link #updateItem(Object, Object)} and
+     *                    {@link #removeItem(Object)}. The index is only kept while a provider is
+     *                    set and is built from the pages in memory on the next lookup.
+     */
+    public void setKeyProvider(KeyProvider<T> keyProvider) {
+        this.keyProvider = keyProvider;
+        indexStale = true;
     }
 
     public void setMaxPagesInMemory(int maxPagesInMemory) {
         this.maxPagesInMemory = maxPagesInMemory;
     }
 
+    /**
+     * Removes pages until there are no more than {@link #maxPagesInMemory}, starting with the ones
+     * furthest from the visible positions. Pages with visible items and the page next to the one
+     * being loaded are never removed. Removing a page above the visible items turns it into empty
+     * rows (like when scrolling down) so the scroll position doesn't change.
+     *
+     * @param firstVisible the first visible simulated position
+     * @param lastVisible the last visible simulated position
+     */
+    public void trimPages(int firstVisible, int lastVisible) {
+        finishPublishing();
+        while (rangeMap.size() > Math.max(1, maxPagesInMemory)) {
+            int first = rangeMap.firstKey();
+            int firstEnd = first + rangeMap.firstEntry().getValue().size();
+            int last = rangeMap.lastKey();
+            boolean canRemoveFirst = loadingDirection != RecyclerViewScrollListener.LOAD_UP
+                    && firstEnd <= firstVisible;
+            boolean canRemoveLast = loadingDirection != RecyclerViewScrollListener.LOAD_DOWN
+                    && last > lastVisible;
+
+            if (canRemoveFirst && (!canRemoveLast || firstVisible - firstEnd >= last - lastVisible)) {
+                removePage(first);
+                notifyItemRangeChanged(first, firstEnd - first);
+
+            } else if (canRemoveLast) {
+                int count = getEnd() - last;
+                removePage(last);
+                notifyItemRangeRemoved(last, count);
+
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Drops the data that is only kept to make other operations faster (the index of the
+     * {@link KeyProvider}), it is rebuilt when needed.
+     */
+    public void releaseCaches() {
+        keyIndex.clear();
+        indexShift = 0;
+        indexStale = true;
+    }
+
     /**
      * @param direction the direction of the next range, should be one of
      *                  {@link RecyclerViewScrollListener#LOAD_DOWN} or
@@ -169,18 +796,19 @@ public abstract class PaginatedAdapter<T> extends RecyclerView.Adapter {
      */
     public Range getNextRange(int direction) {
         int from, to;
-        if (rangeMap.size() == 0) {
-            return new Range(0, pageSize - 1);
+        int size = nextPageSize > 0 ? nextPageSize : pageSize;
+        if (rangeMap.size() == 0 && emptyOffset == 0) {
+            return new Range(0, size - 1);
         }
 
         if (direction == RecyclerViewScrollListener.LOAD_DOWN) {
-            from = rangeMap.lastKey() + pageSize;
-            to = from + pageSize - 1;
+            from = getEnd();
+            to = from + size - 1;
             return new Range(from, to);
 
         } else {
-            to = rangeMap.firstKey() - 1;
-            from = to - (pageSize - 1);
+            to = getOffset() - 1;
+            from = Math.max(0, to - (size - 1));
             return new Range(from, to);
         }
     }
@@ -191,7 +819,7 @@ public abstract class PaginatedAdapter<T> extends RecyclerView.Adapter {
      *         be 20, meaning that we have all the items from 20 to 79.
      */
     public int getOffset() {
-        return rangeMap.size() > 0 ? rangeMap.firstKey() : 0;
+        return rangeMap.size() > 0 ? rangeMap.firstKey() : emptyOffset;
     }
 
     public void setPageSize(int pageSize) {
@@ -202,6 +830,16 @@ public abstract class PaginatedAdapter<T> extends RecyclerView.Adapter {
         return pageSize;
     }
 
+    /**
+     * @param nextPageSize the size of the ranges returned by {@link #getNextRange(int)}, chosen once
+     *                     per request when the adaptive page size is used, or 0 to use
+     *                     {@link #pageSize}. It goes back to 0 on {@link #clearAll()}, so the
+     *                     first page after a refresh isn't as big as the last one requested.
+     */
+    void setNextPageSize(int nextPageSize) {
+        this.nextPageSize = nextPageSize;
+    }
+
     /**
      * @param direction the direction in which the loading will occur, should be one of
      *                  {@link RecyclerViewScrollListener#LOAD_DOWN} or
@@ -210,20 +848,79 @@ public abstract class PaginatedAdapter<T> extends RecyclerView.Adapter {
      * Sets the loading direction and removes a page in the opposite direction if the number of pages
      * plus one exceeds the maxPagesInMemory. This way some scroll issues are avoided when the list
      * is loading the items in one direction but the user scrolls all the way in the other direction.
+     * The pages that grew because of {@link #insertItems(int, List)} are split before that.
+     * With chunked publishing only the loading row and the removed page are notified, otherwise
+     * the whole data set is.
      */
     public void setLoadingDirection(int direction){
-        this.loadingDirection = direction;
+        if (direction == RecyclerViewScrollListener.NOT_LOADING && publishingElements != null) {
+            //keep the loading row until the page is fully published
+            hideLoadingWhenPublished = true;
+            return;
+        }
+        hideLoadingWhenPublished = false;
+        finishPublishing();
+
+        boolean changed = direction != loadingDirection;
+        if (changed) {
+            notifyLoadingRow(RecyclerViewScrollListener.NOT_LOADING);
+        }
         if (direction != RecyclerViewScrollListener.NOT_LOADING) {
-            if (rangeMap.size() + 1 > maxPagesInMemory) {
-                if (loadingDirection == RecyclerViewScrollListener.LOAD_DOWN) {
-                    rangeMap.remove(rangeMap.firstKey());
+            rebalancePages();
+            //the split pages may need more than one page to be removed
+            while (rangeMap.size() > 0 && rangeMap.size() + 1 > maxPagesInMemory) {
+                if (direction == RecyclerViewScrollListener.LOAD_DOWN) {
+                    int pageStart = rangeMap.firstKey();
+                    int count = rangeMap.firstEntry().getValue().size();
+                    removePage(pageStart);
+                    //the rows of the page become empty rows, so the count doesn't change
+                    if (chunkedPublishing) {
+                        notifyItemRangeChanged(pageStart, count);
+                    }
 
                 } else {
-                    rangeMap.remove(rangeMap.lastKey());
+                    int pageStart = rangeMap.lastKey();
+                    int count = rangeMap.lastEntry().getValue().size();
+                    removePage(pageStart);
+                    if (chunkedPublishing) {
+                        notifyItemRangeRemoved(pageStart, count);
+                    }
                 }
             }
         }
-        notifyDataSetChanged();
+        if (changed) {
+            notifyLoadingRow(direction);
+        }
+        if (!chunkedPublishing) {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Changes the loading direction, notifying only the loading row with chunked publishing. The
+     * loading row is the row after the last one when loading down and the empty row right above
+     * the offset when loading up.
+     */
+    private void notifyLoadingRow(int direction) {
+        int previous = loadingDirection;
+        loadingDirection = direction;
+        if (!chunkedPublishing) {
+            return;
+        }
+
+        if (previous == RecyclerViewScrollListener.LOAD_DOWN) {
+            notifyItemRemoved(getItemCount());
+
+        } else if (previous == RecyclerViewScrollListener.LOAD_UP && getOffset() > 0) {
+            notifyItemChanged(getOffset() - 1);
+        }
+
+        if (direction == RecyclerViewScrollListener.LOAD_DOWN) {
+            notifyItemInserted(getItemCount() - 1);
+
+        } else if (direction == RecyclerViewScrollListener.LOAD_UP && getOffset() > 0) {
+            notifyItemChanged(getOffset() - 1);
+        }
     }
 
     /**
@@ -237,4 +934,104 @@ public abstract class PaginatedAdapter<T> extends RecyclerView.Adapter {
     public void setLayoutMoreProgress(int layoutMoreProgress) {
         this.layoutMoreProgress = layoutMoreProgress;
     }
+
+    /**
+     * @param chunkedPublishing if true, pages bigger than what fits in the frame budget are
+     *                          published across several frames instead of all at once, starting
+     *                          with the rows next to the ones being shown. The loading row is
+     *                          kept until the page is fully published. The adapter then notifies
+     *                          every added page and loading row change itself, so
+     *                          notifyDataSetChanged() shouldn't be called after
+     *                          {@link #addElements(List)}.
+     *                          Requires {@link #addElements(List)} to be called on the main thread.
+     */
+    public void setChunkedPublishing(boolean chunkedPublishing) {
+        this.chunkedPublishing = chunkedPublishing;
+        if (!chunkedPublishing) {
+            finishPublishing();
+        }
+    }
+
+    public boolean isChunkedPublishing() {
+        return chunkedPublishing;
+    }
+
+    /**
+     * @param frameBudgetMs the time each frame may spend creating and binding the published rows
+     */
+    public void setPublishFrameBudget(int frameBudgetMs) {
+        this.frameBudgetNanos = frameBudgetMs * 1000000L;
+    }
+
+    /**
+     * Page opened with {@link #openPage()} that receives its elements as they arrive. Once it is
+     * sealed, or dropped by {@link #clearAll()} or because its page was removed from memory, the
+     * stream is closed and the elements still given to it are ignored, so a response that arrives
+     * after a refresh doesn't end up in the new list.
+     */
+    public class PageStream {
+        private final List<T> page = new ArrayList<>();
+        private final boolean up;
+
+        private PageStream(boolean up) {
+            this.up = up;
+        }
+
+        /**
+         * @return true until the stream is sealed or dropped
+         */
+        public boolean isOpen() {
+            return stream == this;
+        }
+
+        /**
+         * @param elements the next elements of the page, ignored if the stream is closed
+         */
+        public void append(List<T> elements) {
+            if (!isOpen() || elements.isEmpty()) {
+                return;
+            }
+            if (up) {
+                page.addAll(elements);
+                return;
+            }
+
+            int position = getEnd();
+            boolean nothingShown = rangeMap.size() == 0;
+            if (page.isEmpty()) {
+                rangeMap.put(position, page);
+            }
+            page.addAll(elements);
+            indexPage(position, elements);
+            if (nothingShown) {
+                //nothing is shown yet, inserting in front of the loading row would keep it on top
+                notifyDataSetChanged();
+
+            } else {
+                notifyItemRangeInserted(position, elements.size());
+            }
+        }
+
+        /**
+         * Closes the page once its last element arrived. Should be called before hiding the
+         * loading row with {@link PaginatedRecyclerView#setLoading(boolean)}.
+         */
+        public void seal() {
+            if (!isOpen()) {
+                return;
+            }
+            stream = null;
+            if (up && !page.isEmpty()) {
+                addElements(page);
+            }
+        }
+    }
+
+    /**
+     * Interface that gives the unique key of an item, used to find the item in memory without
+     * scanning all the pages
+     */
+    public interface KeyProvider<T> {
+        Object getKey(T item);
+    }
 }
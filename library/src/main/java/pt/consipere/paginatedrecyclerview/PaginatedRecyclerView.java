@@ -1,8 +1,11 @@
 package pt.consipere.paginatedrecyclerview;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.ContextWrapper;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.widget.LinearLayoutManager;
@@ -18,11 +21,20 @@ import java.lang.reflect.Method;
 
 public class PaginatedRecyclerView extends SuperRecyclerView {
 
+    private static final long TRIM_RESTORE_DELAY_MS = 30000;
+
     private int pageSize = 20;
     private int maxPagesInMemory = 3;
     private int loadOffset = 0;
     private int loadingDirection = 0;
     private int layoutMoreProgress = -1;
+    private boolean adaptivePageSize = false;
+    private int minPageSize = 10;
+    private int maxPageSize = 100;
+    private PageSizeTuner pageSizeTuner;
+    private boolean chunkedPublishing = false;
+    private int publishFrameBudget = 4;
+    private int trimmedMaxPages = -1;
 
     private RecyclerViewScrollListener listener;
 
@@ -30,6 +42,32 @@ public class PaginatedRecyclerView extends SuperRecyclerView {
     private OnLoadMoreBottomListener loadMoreBottomListener;
     private boolean isRefreshing = false;
 
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            trimMemory(TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
+
+    private final Runnable restoreMaxPages = new Runnable() {
+        @Override
+        public void run() {
+            trimmedMaxPages = -1;
+            if (getAdapter() instanceof PaginatedAdapter) {
+                ((PaginatedAdapter) getAdapter()).setMaxPagesInMemory(maxPagesInMemory);
+            }
+        }
+    };
+
     public PaginatedRecyclerView(Context context) {
         super(context);
         setLayoutManager();
@@ -54,10 +92,32 @@ public class PaginatedRecyclerView extends SuperRecyclerView {
         if (getRecyclerView().getLayoutManager() instanceof LinearLayoutManager) {
             listener = new RecyclerViewScrollListener((LinearLayoutManager)
                     getRecyclerView().getLayoutManager()) {
+                @Override
+                public void onScrolled(RecyclerView view, int dx, int dy) {
+                    if (pageSizeTuner != null && view.getChildCount() > 0) {
+                        pageSizeTuner.onScrolled(view.getChildCount(), dy,
+                                (float) view.getHeight() / view.getChildCount(),
+                                SystemClock.uptimeMillis());
+                    }
+                    super.onScrolled(view, dx, dy);
+                }
+
                 @Override
                 public void onLoadMore(int direction) {
                     loadingDirection = direction;
-                    if (direction == RecyclerViewScrollListener.LOAD_DOWN &&
+                    PaginatedAdapter adapter = (PaginatedAdapter) getAdapter();
+                    boolean repository = adapter != null && adapter.getPageRepository() != null;
+                    if (adapter != null) {
+                        //the pages of a repository are shared by ranges, so all the adapters
+                        //using it must ask for the same ranges
+                        adapter.setNextPageSize(pageSizeTuner != null && !repository
+                                ? pageSizeTuner.onPageRequested(SystemClock.uptimeMillis())
+                                : 0);
+                    }
+                    if (repository) {
+                        loadFromRepository(direction);
+
+                    } else if (direction == RecyclerViewScrollListener.LOAD_DOWN &&
                             loadMoreBottomListener != null) {
                         loadMoreBottomListener.onLoadMore();
                     } else if (direction == RecyclerViewScrollListener.LOAD_UP &&
@@ -86,6 +146,66 @@ public class PaginatedRecyclerView extends SuperRecyclerView {
         return isRefreshing;
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getContext().registerComponentCallbacks(memoryCallbacks);
+        if (getAdapter() instanceof PaginatedAdapter) {
+            ((PaginatedAdapter) getAdapter()).attachRepository();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        getContext().unregisterComponentCallbacks(memoryCallbacks);
+        removeCallbacks(restoreMaxPages);
+        if (getAdapter() instanceof PaginatedAdapter) {
+            PaginatedAdapter adapter = (PaginatedAdapter) getAdapter();
+            //no more frames are drawn, the rest of a page published across frames is added now
+            adapter.finishPublishing();
+            //the repository keeps its loader (usually the activity) while some adapter uses it
+            adapter.detachRepository();
+        }
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * Shrinks the pages in memory based on the memory pressure level. The recycled views and the
+     * caches of the adapter are dropped first, then the pages furthest from the visible items are
+     * removed. The number of pages grows back to {@link #maxPagesInMemory} (as new pages are loaded)
+     * once there are no more memory warnings for {@link #TRIM_RESTORE_DELAY_MS}.
+     *
+     * @param level one of the {@link ComponentCallbacks2} TRIM_MEMORY levels
+     */
+    private void trimMemory(int level) {
+        if (!(getAdapter() instanceof PaginatedAdapter)
+                || level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return;
+        }
+        PaginatedAdapter adapter = (PaginatedAdapter) getAdapter();
+        getRecyclerView().getRecycledViewPool().clear();
+        adapter.releaseCaches();
+
+        int pages = trimmedMaxPages > 0 ? trimmedMaxPages : maxPagesInMemory;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            pages = 1;
+
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            pages = Math.min(pages, Math.max(1, maxPagesInMemory / 2));
+        }
+
+        if (pages < maxPagesInMemory) {
+            trimmedMaxPages = pages;
+            LinearLayoutManager layoutManager =
+                    (LinearLayoutManager) getRecyclerView().getLayoutManager();
+            adapter.setMaxPagesInMemory(pages);
+            adapter.trimPages(layoutManager.findFirstVisibleItemPosition(),
+                    layoutManager.findLastVisibleItemPosition());
+        }
+        removeCallbacks(restoreMaxPages);
+        postDelayed(restoreMaxPages, TRIM_RESTORE_DELAY_MS);
+    }
+
     /**
      * Parse the attributes that are set on the xml
      */
@@ -100,6 +220,12 @@ public class PaginatedRecyclerView extends SuperRecyclerView {
             loadOffset = a.getInteger(R.styleable.PaginatedRecyclerView_loadOffset, 0);
             layoutMoreProgress = a.getResourceId(R.styleable.PaginatedRecyclerView_layoutMoreProgress,
                     R.layout.row_progress);
+            adaptivePageSize = a.getBoolean(R.styleable.PaginatedRecyclerView_adaptivePageSize, false);
+            minPageSize = a.getInteger(R.styleable.PaginatedRecyclerView_minPageSize, 10);
+            maxPageSize = a.getInteger(R.styleable.PaginatedRecyclerView_maxPageSize, 100);
+            chunkedPublishing = a.getBoolean(R.styleable.PaginatedRecyclerView_chunkedPublishing,
+                    false);
+            publishFrameBudget = a.getInteger(R.styleable.PaginatedRecyclerView_publishFrameBudget, 4);
             final String loadUp = a.getString(R.styleable.PaginatedRecyclerView_onLoadMoreUp);
             final String loadDown = a.getString(R.styleable.PaginatedRecyclerView_onLoadMoreDown);
 
@@ -130,9 +256,13 @@ public class PaginatedRecyclerView extends SuperRecyclerView {
     public void setAdapter(RecyclerView.Adapter adapter) {
         if (adapter instanceof PaginatedAdapter) {
             ((PaginatedAdapter)adapter).setPageSize(pageSize);
-            ((PaginatedAdapter)adapter).setMaxPagesInMemory(maxPagesInMemory);
+            ((PaginatedAdapter)adapter).setMaxPagesInMemory(
+                    trimmedMaxPages > 0 ? trimmedMaxPages : maxPagesInMemory);
             ((PaginatedAdapter)adapter).setLayoutMoreProgress(layoutMoreProgress);
+            ((PaginatedAdapter)adapter).setChunkedPublishing(chunkedPublishing);
+            ((PaginatedAdapter)adapter).setPublishFrameBudget(publishFrameBudget);
             super.setAdapter(adapter);
+            setAdaptivePageSize(adaptivePageSize);
 
         } else {
             Log.e(this.getClass().getSimpleName(), "Adapter is not instance of Paginated Adapter");
@@ -222,6 +352,28 @@ public class PaginatedRecyclerView extends SuperRecyclerView {
         setListeners();
     }
 
+    /**
+     * Loads the next page in the given direction through the {@link PageRepository} of the
+     * adapter. It's called automatically while scrolling when the adapter has a repository, and
+     * can be used to load the first page (for example when refreshing).
+     *
+     * @param direction should be one of {@link RecyclerViewScrollListener#LOAD_DOWN} or
+     *                  {@link RecyclerViewScrollListener#LOAD_UP}
+     */
+    public void loadFromRepository(int direction) {
+        final PaginatedAdapter adapter = (PaginatedAdapter) getAdapter();
+        adapter.loadFromRepository(direction, new Runnable() {
+            @Override
+            public void run() {
+                setRefreshing(false);
+                setLoading(false);
+                if (!adapter.isChunkedPublishing()) {
+                    adapter.notifyDataSetChanged();
+                }
+            }
+        });
+    }
+
     public OnLoadMoreTopListener getLoadMoreTopListener() {
         return loadMoreTopListener;
     }
@@ -242,11 +394,53 @@ public class PaginatedRecyclerView extends SuperRecyclerView {
         return pageSize;
     }
 
+    /**
+     * @param adaptivePageSize if true the size of each page is chosen when it is requested, based
+     *                         on the rows that fit on the screen, the scroll speed and the time
+     *                         the previous pages took to load, between {@link #minPageSize} and
+     *                         {@link #maxPageSize}. Otherwise the fixed {@link #pageSize} is used.
+     *                         The fixed size is always used while the adapter loads its pages from a
+     *                         {@link PageRepository}, since adapters sharing pages must request the
+     *                         same ranges.
+     */
+    public void setAdaptivePageSize(boolean adaptivePageSize) {
+        this.adaptivePageSize = adaptivePageSize;
+        if (adaptivePageSize && pageSizeTuner == null) {
+            pageSizeTuner = new PageSizeTuner(minPageSize, maxPageSize);
+
+        } else if (!adaptivePageSize) {
+            pageSizeTuner = null;
+        }
+
+        if (!adaptivePageSize && getAdapter() instanceof PaginatedAdapter) {
+            ((PaginatedAdapter) getAdapter()).setNextPageSize(0);
+        }
+    }
+
+    public boolean isAdaptivePageSize() {
+        return adaptivePageSize;
+    }
+
+    /**
+     * @param minPageSize the minimum size of a page when the adaptive page size is used
+     * @param maxPageSize the maximum size of a page when the adaptive page size is used
+     */
+    public void setPageSizeBounds(int minPageSize, int maxPageSize) {
+        this.minPageSize = minPageSize;
+        this.maxPageSize = maxPageSize;
+        if (pageSizeTuner != null) {
+            pageSizeTuner.setBounds(minPageSize, maxPageSize);
+        }
+    }
+
     public boolean isLoading() {
         return listener.isLoading();
     }
 
     public void setLoading(boolean loading) {
+        if (!loading && pageSizeTuner != null && listener.isLoading()) {
+            pageSizeTuner.onPageLoaded(SystemClock.uptimeMillis());
+        }
         listener.setLoading(loading);
     }
 
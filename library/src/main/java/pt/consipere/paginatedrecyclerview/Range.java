@@ -1,11 +1,32 @@
 package pt.consipere.paginatedrecyclerview;
 
+/**
+ * Range of simulated positions, from and to included. It is immutable since it is used as the key
+ * of the pages in {@link PageRepository}.
+ */
 public class Range {
-    public int from = 0;
-    public int to = 0;
+    public final int from;
+    public final int to;
 
     public Range(int from, int to) {
         this.from = from;
         this.to = to;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Range)) {
+            return false;
+        }
+        Range range = (Range) o;
+        return from == range.from && to == range.to;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * from + to;
+    }
 }
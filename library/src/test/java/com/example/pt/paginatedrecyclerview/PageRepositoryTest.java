@@ -0,0 +1,251 @@
+package com.example.pt.paginatedrecyclerview;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pt.consipere.paginatedrecyclerview.BuildConfig;
+import pt.consipere.paginatedrecyclerview.PageRepository;
+import pt.consipere.paginatedrecyclerview.Range;
+
+import static org.junit.Assert.*;
+import static pt.consipere.paginatedrecyclerview.RecyclerViewScrollListener.LOAD_DOWN;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PageRepositoryTest {
+
+    private ManualLoader loader;
+    private PageRepository<String> repository;
+    private Object dataSource;
+
+    @Before
+    public void setUp() throws Exception {
+        loader = new ManualLoader();
+        dataSource = new Object();
+        repository = PageRepository.get(dataSource, loader);
+    }
+
+    @Test
+    public void requestsForTheSameRangeShareOneLoad() throws Exception {
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        repository.acquire(new Range(0, 2), first);
+        repository.acquire(new Range(0, 2), second);
+        assertEquals(1, loader.requests.size());
+
+        loader.succeed(0);
+        ShadowLooper.idleMainLooper();
+
+        assertNotNull(first.page);
+        assertSame(first.page, second.page);
+        assertEquals(1, repository.getPageCount());
+    }
+
+    @Test
+    public void pageIsDroppedOnceEveryHolderReleasesIt() throws Exception {
+        repository.acquire(new Range(0, 2), new RecordingCallback());
+        repository.acquire(new Range(0, 2), new RecordingCallback());
+        loader.succeed(0);
+        ShadowLooper.idleMainLooper();
+
+        repository.release(new Range(0, 2));
+        assertEquals(1, repository.getPageCount());
+        repository.release(new Range(0, 2));
+        assertEquals(0, repository.getPageCount());
+    }
+
+    @Test
+    public void failedPageIsRequestedAgain() throws Exception {
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        repository.acquire(new Range(0, 2), first);
+        repository.acquire(new Range(0, 2), second);
+
+        loader.fail(0);
+        ShadowLooper.idleMainLooper();
+
+        assertNotNull(first.error);
+        assertNotNull(second.error);
+        assertEquals(0, repository.getPageCount());
+
+        RecordingCallback retry = new RecordingCallback();
+        repository.acquire(new Range(0, 2), retry);
+        assertEquals(2, loader.requests.size());
+        loader.succeed(1);
+        ShadowLooper.idleMainLooper();
+
+        assertNotNull(retry.page);
+        assertNull(retry.error);
+    }
+
+    @Test
+    public void repositoryIsForgottenWhenNoAdapterUsesIt() throws Exception {
+        TestPaginatedAdapter first = new TestPaginatedAdapter(3);
+        TestPaginatedAdapter second = new TestPaginatedAdapter(3);
+        first.setPageRepository(repository);
+        second.setPageRepository(repository);
+
+        first.setPageRepository(null);
+        assertSame(repository, PageRepository.get(dataSource, loader));
+
+        second.setPageRepository(null);
+        assertNotSame(repository, PageRepository.get(dataSource, loader));
+    }
+
+    @Test
+    public void repositoryIsOnlyRegisteredOnceAnAdapterUsesIt() throws Exception {
+        assertNotSame(repository, PageRepository.get(dataSource, loader));
+
+        TestPaginatedAdapter adapter = new TestPaginatedAdapter(3);
+        adapter.setPageRepository(repository);
+        assertSame(repository, PageRepository.get(dataSource, loader));
+    }
+
+    @Test
+    public void pagesAreGivenBackWhenTheAdapterStopsUsingTheRepository() throws Exception {
+        TestPaginatedAdapter adapter = new TestPaginatedAdapter(3);
+        adapter.setPageRepository(repository);
+        adapter.loadFromRepository(LOAD_DOWN, null);
+        loader.succeed(0);
+        ShadowLooper.idleMainLooper();
+        assertEquals(1, repository.getPageCount());
+
+        adapter.setPageRepository(null);
+
+        assertEquals(0, repository.getPageCount());
+        assertEquals(3, adapter.getRealCount());
+        assertEquals("2:v", adapter.getItemAt(2));
+    }
+
+    @Test
+    public void pagePublishedAcrossFramesIsSharedWithoutCopies() throws Exception {
+        TestPaginatedAdapter first = new TestPaginatedAdapter(3);
+        TestPaginatedAdapter second = new TestPaginatedAdapter(3);
+        for (TestPaginatedAdapter adapter : new TestPaginatedAdapter[]{first, second}) {
+            adapter.setChunkedPublishing(true);
+            adapter.setPublishFrameBudget(0);
+            adapter.setPageRepository(repository);
+            adapter.loadFromRepository(LOAD_DOWN, null);
+        }
+        loader.succeed(0);
+        ShadowLooper.idleMainLooper();
+        first.setChunkedPublishing(false);
+        second.setChunkedPublishing(false);
+
+        assertEquals(1, loader.requests.size());
+        assertSame(first.getAllPages().iterator().next(), second.getAllPages().iterator().next());
+        assertEquals("2:v", second.getItemAt(2));
+
+        first.setPageRepository(null);
+        assertEquals(1, repository.getPageCount());
+        second.setPageRepository(null);
+        assertEquals(0, repository.getPageCount());
+    }
+
+    @Test
+    public void pageDeliveredAfterTheAdapterStoppedUsingTheRepositoryIsGivenBack() throws Exception {
+        TestPaginatedAdapter adapter = new TestPaginatedAdapter(3);
+        adapter.setPageRepository(repository);
+        CountingRunnable onLoaded = new CountingRunnable();
+        adapter.loadFromRepository(LOAD_DOWN, onLoaded);
+
+        adapter.setPageRepository(null);
+        loader.succeed(0);
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(1, onLoaded.runs);
+        assertEquals(0, adapter.getRealCount());
+        assertEquals(0, repository.getPageCount());
+    }
+
+    @Test
+    public void loadingIsResetWhenThePageNoLongerFits() throws Exception {
+        TestPaginatedAdapter adapter = new TestPaginatedAdapter(3);
+        adapter.setPageRepository(repository);
+        CountingRunnable onLoaded = new CountingRunnable();
+
+        adapter.setLoadingDirection(LOAD_DOWN);
+        adapter.loadFromRepository(LOAD_DOWN, onLoaded);
+        loader.succeed(0);
+        ShadowLooper.idleMainLooper();
+        assertEquals(1, onLoaded.runs);
+
+        adapter.loadFromRepository(LOAD_DOWN, onLoaded);
+        adapter.insertItems(0, TestPaginatedAdapter.page(100, 2));
+        loader.succeed(1);
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(2, onLoaded.runs);
+        assertEquals(5, adapter.getRealCount());
+        assertEquals(0, repository.getPageCount());
+    }
+
+    @Test
+    public void loadingIsResetWhenThePageFails() throws Exception {
+        TestPaginatedAdapter adapter = new TestPaginatedAdapter(3);
+        adapter.setPageRepository(repository);
+        CountingRunnable onLoaded = new CountingRunnable();
+
+        adapter.loadFromRepository(LOAD_DOWN, onLoaded);
+        loader.fail(0);
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(1, onLoaded.runs);
+        assertEquals(0, adapter.getRealCount());
+    }
+
+    /**
+     * Loader that answers the requests only when the test says so
+     */
+    private static class ManualLoader implements PageRepository.PageLoader<String> {
+        private final List<Range> requests = new ArrayList<>();
+        private final List<PageRepository.Callback<String>> callbacks = new ArrayList<>();
+
+        @Override
+        public void loadPage(Range range, PageRepository.Callback<String> callback) {
+            requests.add(range);
+            callbacks.add(callback);
+        }
+
+        void succeed(int request) {
+            Range range = requests.get(request);
+            callbacks.get(request).onPageLoaded(range,
+                    TestPaginatedAdapter.page(range.from, range.to - range.from + 1));
+        }
+
+        void fail(int request) {
+            callbacks.get(request).onError(requests.get(request), new Exception("failed"));
+        }
+    }
+
+    private static class RecordingCallback implements PageRepository.Callback<String> {
+        private List<String> page;
+        private Throwable error;
+
+        @Override
+        public void onPageLoaded(Range range, List<String> page) {
+            this.page = page;
+        }
+
+        @Override
+        public void onError(Range range, Throwable error) {
+            this.error = error;
+        }
+    }
+
+    private static class CountingRunnable implements Runnable {
+        private int runs = 0;
+
+        @Override
+        public void run() {
+            runs++;
+        }
+    }
+}
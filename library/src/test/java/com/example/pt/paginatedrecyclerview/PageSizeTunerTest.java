@@ -0,0 +1,98 @@
+package com.example.pt.paginatedrecyclerview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pt.consipere.paginatedrecyclerview.PageSizeTuner;
+
+import static org.junit.Assert.*;
+
+public class PageSizeTunerTest {
+
+    private static final int ROWS = 10;
+
+    private PageSizeTuner tuner;
+
+    @Before
+    public void setUp() throws Exception {
+        tuner = new PageSizeTuner(5, 100);
+        tuner.onScrolled(ROWS, 0, 100, 0);
+    }
+
+    @Test
+    public void usesTheMinimumSizeBeforeMeasuring() throws Exception {
+        assertEquals(5, tuner.onPageRequested(0));
+    }
+
+    @Test
+    public void coversTwoScreensWhenNotScrolling() throws Exception {
+        measureThroughput(10, 100);
+
+        assertEquals(2 * ROWS, tuner.onPageRequested(1000));
+    }
+
+    @Test
+    public void growsWithTheScrollSpeed() throws Exception {
+        measureThroughput(10, 100); //0.1 items per ms
+        tuner.onScrolled(ROWS, 100, 100, 1000);
+        tuner.onScrolled(ROWS, 100, 100, 1020); //0.05 rows per ms, averaged to 0.015
+
+        int expected = (int) Math.ceil(2 * ROWS / (1 - 0.3f * 0.05f / 0.1f));
+        assertEquals(expected, tuner.onPageRequested(1020));
+        assertTrue(expected > 2 * ROWS);
+    }
+
+    @Test
+    public void usesTheMaximumSizeWhenScrollingFasterThanTheLoads() throws Exception {
+        measureThroughput(10, 100);
+        tuner.onScrolled(ROWS, 100, 100, 1000);
+        tuner.onScrolled(ROWS, 5000, 100, 1010);
+
+        assertEquals(100, tuner.onPageRequested(1010));
+    }
+
+    @Test
+    public void speedIsResetAfterAPause() throws Exception {
+        measureThroughput(10, 100);
+        tuner.onScrolled(ROWS, 100, 100, 1000);
+        tuner.onScrolled(ROWS, 5000, 100, 1010);
+        tuner.onScrolled(ROWS, 100, 100, 2000);
+
+        assertEquals(2 * ROWS, tuner.onPageRequested(2000));
+    }
+
+    @Test
+    public void followsTheRowsOnScreenWhenTheyShrink() throws Exception {
+        measureThroughput(10, 100);
+        tuner.onScrolled(ROWS / 2, 0, 100, 1000);
+
+        assertEquals(ROWS, tuner.onPageRequested(1000));
+    }
+
+    @Test
+    public void sizeIsKeptWithinTheBounds() throws Exception {
+        measureThroughput(10, 100);
+        tuner.setBounds(25, 30);
+
+        assertEquals(25, tuner.onPageRequested(1000));
+    }
+
+    @Test
+    public void requestingDoesNotChangeTheNextSize() throws Exception {
+        measureThroughput(10, 100);
+
+        assertEquals(tuner.nextPageSize(), tuner.nextPageSize());
+        assertEquals(tuner.nextPageSize(), tuner.onPageRequested(1000));
+    }
+
+    /**
+     * Requests a page and delivers it after the given latency, the first request uses the
+     * minimum size so the measured throughput is size / latency
+     */
+    private void measureThroughput(int size, long latency) {
+        tuner.setBounds(size, 100);
+        assertEquals(size, tuner.onPageRequested(0));
+        tuner.onPageLoaded(latency);
+        tuner.setBounds(5, 100);
+    }
+}
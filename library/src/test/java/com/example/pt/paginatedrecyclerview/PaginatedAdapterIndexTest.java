@@ -0,0 +1,83 @@
+package com.example.pt.paginatedrecyclerview;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import pt.consipere.paginatedrecyclerview.BuildConfig;
+
+import static org.junit.Assert.*;
+import static pt.consipere.paginatedrecyclerview.RecyclerViewScrollListener.LOAD_DOWN;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PaginatedAdapterIndexTest {
+
+    private TestPaginatedAdapter adapter;
+    private RecordingObserver observer;
+
+    @Before
+    public void setUp() throws Exception {
+        adapter = new TestPaginatedAdapter(3);
+        adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(0, 3));
+        adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(3, 3));
+        observer = new RecordingObserver();
+        adapter.registerAdapterDataObserver(observer);
+    }
+
+    @Test
+    public void updateItemNotifiesItsPosition() throws Exception {
+        assertTrue(adapter.updateItem("4", "4:new"));
+
+        assertEquals("4:new", adapter.getItemAt(4));
+        assertEquals(Arrays.asList("changed 4,1"), observer.events);
+    }
+
+    @Test
+    public void updateItemWithUnknownKey() throws Exception {
+        assertFalse(adapter.updateItem("42", "42:new"));
+        assertTrue(observer.events.isEmpty());
+    }
+
+    @Test
+    public void updateItemWithNewKey() throws Exception {
+        assertTrue(adapter.updateItem("1", "10:new"));
+
+        assertFalse(adapter.updateItem("1", "1:again"));
+        assertTrue(adapter.updateItem("10", "10:again"));
+        assertEquals("10:again", adapter.getItemAt(1));
+        assertEquals(Arrays.asList("changed 1,1", "changed 1,1"), observer.events);
+    }
+
+    @Test
+    public void removeItemMovesTheFollowingItems() throws Exception {
+        assertTrue(adapter.removeItem("1"));
+
+        assertEquals(5, adapter.getItemCount());
+        assertEquals("2:v", adapter.getItemAt(1));
+        assertEquals("3:v", adapter.getItemAt(2));
+        assertFalse(adapter.removeItem("1"));
+
+        assertTrue(adapter.updateItem("4", "4:new"));
+        assertEquals("4:new", adapter.getItemAt(3));
+        assertEquals(Arrays.asList("removed 1,1", "changed 3,1"), observer.events);
+    }
+
+    @Test
+    public void removeLastItemOfAPage() throws Exception {
+        adapter.removeItem("0");
+        adapter.removeItem("1");
+        adapter.removeItem("2");
+
+        assertEquals(1, adapter.getAllPages().size());
+        assertEquals(0, adapter.getOffset());
+        assertEquals("3:v", adapter.getItemAt(0));
+        assertTrue(adapter.updateItem("5", "5:new"));
+        assertEquals(Arrays.asList("removed 0,1", "removed 0,1", "removed 0,1", "changed 2,1"),
+                observer.events);
+    }
+}
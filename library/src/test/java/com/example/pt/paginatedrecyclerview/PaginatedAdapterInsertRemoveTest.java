@@ -0,0 +1,196 @@
+package com.example.pt.paginatedrecyclerview;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import pt.consipere.paginatedrecyclerview.BuildConfig;
+import pt.consipere.paginatedrecyclerview.PaginatedAdapter;
+
+import static org.junit.Assert.*;
+import static pt.consipere.paginatedrecyclerview.RecyclerViewScrollListener.LOAD_DOWN;
+import static pt.consipere.paginatedrecyclerview.RecyclerViewScrollListener.LOAD_UP;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PaginatedAdapterInsertRemoveTest {
+
+    private TestPaginatedAdapter adapter;
+    private RecordingObserver observer;
+
+    /**
+     * Loads the pages 0-2, 3-5 and 6-8 keeping only two of them, so the offset is 3
+     */
+    @Before
+    public void setUp() throws Exception {
+        adapter = new TestPaginatedAdapter(3);
+        adapter.setMaxPagesInMemory(2);
+        adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(0, 3));
+        adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(3, 3));
+        adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(6, 3));
+        observer = new RecordingObserver();
+        adapter.registerAdapterDataObserver(observer);
+
+        assertEquals(3, adapter.getOffset());
+        assertEquals(9, adapter.getItemCount());
+    }
+
+    @Test
+    public void insertInFrontOfThePages() throws Exception {
+        adapter.insertItems(0, TestPaginatedAdapter.page(100, 2));
+
+        assertEquals(5, adapter.getOffset());
+        assertEquals(11, adapter.getItemCount());
+        assertEquals("3:v", adapter.getItemAt(5));
+        assertEquals(11, adapter.getNextRange(LOAD_DOWN).from);
+        assertFalse(adapter.updateItem("100", "100:new"));
+
+        assertTrue(adapter.updateItem("4", "4:new"));
+        assertEquals(Arrays.asList("inserted 0,2", "changed 6,1"), observer.events);
+    }
+
+    @Test
+    public void insertInsideAPage() throws Exception {
+        adapter.insertItems(4, TestPaginatedAdapter.page(100, 2));
+
+        assertEquals(3, adapter.getOffset());
+        assertEquals(11, adapter.getItemCount());
+        assertEquals("3:v", adapter.getItemAt(3));
+        assertEquals("100:v", adapter.getItemAt(4));
+        assertEquals("101:v", adapter.getItemAt(5));
+        assertEquals("4:v", adapter.getItemAt(6));
+        assertEquals("8:v", adapter.getItemAt(10));
+
+        assertTrue(adapter.updateItem("101", "101:new"));
+        assertTrue(adapter.updateItem("3", "3:new"));
+        assertTrue(adapter.updateItem("6", "6:new"));
+        assertEquals(Arrays.asList("inserted 4,2", "changed 5,1", "changed 3,1", "changed 8,1"),
+                observer.events);
+    }
+
+    @Test
+    public void insertAtTheEnd() throws Exception {
+        adapter.insertItems(9, TestPaginatedAdapter.page(100, 1));
+
+        assertEquals("100:v", adapter.getItemAt(9));
+        assertEquals(Arrays.asList("inserted 9,1"), observer.events);
+    }
+
+    @Test
+    public void insertAfterTheEndIsIgnored() throws Exception {
+        adapter.insertItems(10, TestPaginatedAdapter.page(100, 1));
+
+        assertEquals(9, adapter.getItemCount());
+        assertTrue(observer.events.isEmpty());
+    }
+
+    @Test
+    public void removeAcrossPages() throws Exception {
+        adapter.removeItems(4, 3);
+
+        assertEquals(6, adapter.getItemCount());
+        assertEquals("3:v", adapter.getItemAt(3));
+        assertEquals("7:v", adapter.getItemAt(4));
+        assertEquals("8:v", adapter.getItemAt(5));
+        assertFalse(adapter.updateItem("5", "5:new"));
+
+        assertTrue(adapter.updateItem("8", "8:new"));
+        assertEquals(Arrays.asList("removed 4,3", "changed 5,1"), observer.events);
+    }
+
+    @Test
+    public void removeInFrontAndInsideThePages() throws Exception {
+        adapter.removeItems(2, 3);
+
+        assertEquals(2, adapter.getOffset());
+        assertEquals(6, adapter.getItemCount());
+        assertEquals("5:v", adapter.getItemAt(2));
+        assertEquals(6, adapter.getNextRange(LOAD_DOWN).from);
+
+        assertTrue(adapter.updateItem("6", "6:new"));
+        assertEquals(Arrays.asList("removed 2,3", "changed 3,1"), observer.events);
+    }
+
+    @Test
+    public void removeWholePage() throws Exception {
+        adapter.removeItems(3, 3);
+
+        assertEquals(1, adapter.getAllPages().size());
+        assertEquals(3, adapter.getOffset());
+        assertEquals("6:v", adapter.getItemAt(3));
+        assertEquals(Arrays.asList("removed 3,3"), observer.events);
+    }
+
+    @Test
+    public void grownPagesAreSplitOnTheNextLoad() throws Exception {
+        adapter.insertItems(4, TestPaginatedAdapter.page(100, 5));
+        assertEquals(2, adapter.getAllPages().size());
+
+        //the page with 8 items is split in 3 pages and then pages are removed until there is room
+        //for the page being loaded
+        adapter.setLoadingDirection(LOAD_DOWN);
+
+        assertEquals(1, adapter.getAllPages().size());
+        assertEquals(Arrays.asList("6:v", "7:v", "8:v"), adapter.getAllPages().iterator().next());
+        assertEquals(11, adapter.getOffset());
+        assertEquals(15, adapter.getItemCount());
+        assertFalse(adapter.updateItem("4", "4:new"));
+        assertTrue(adapter.updateItem("7", "7:new"));
+        assertEquals("changed 12,1", observer.events.get(observer.events.size() - 1));
+    }
+
+    @Test
+    public void loadedPagesBiggerThanThePageSizeAreNotSplit() throws Exception {
+        adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(9, 10));
+        adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(19, 10));
+        adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(29, 10));
+
+        assertEquals(2, adapter.getAllPages().size());
+        assertEquals(19, adapter.getOffset());
+        assertEquals(20, adapter.getRealCount());
+    }
+
+    @Test
+    public void removingEverythingKeepsTheOffset() throws Exception {
+        adapter.removeItems(adapter.getOffset(), adapter.getRealCount());
+
+        assertEquals(Arrays.asList("removed 3,6"), observer.events);
+        assertEquals(3, adapter.getOffset());
+        assertEquals(3, adapter.getItemCount());
+        assertEquals(3, adapter.getNextRange(LOAD_DOWN).from);
+        assertEquals(2, adapter.getNextRange(LOAD_UP).to);
+
+        adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(9, 3));
+        assertEquals(3, adapter.getOffset());
+        assertEquals("10:v", adapter.getItemAt(4));
+    }
+
+    @Test
+    public void removingTheLastItemsByKeyKeepsTheOffset() throws Exception {
+        for (int i = 3; i < 9; i++) {
+            assertTrue(adapter.removeItem(String.valueOf(i)));
+        }
+
+        assertEquals(3, adapter.getOffset());
+        assertEquals(3, adapter.getItemCount());
+        assertEquals(0, adapter.getRealCount());
+    }
+
+    @Test
+    public void indexIsRebuiltWhenTheKeyProviderChanges() throws Exception {
+        adapter.setKeyProvider(new PaginatedAdapter.KeyProvider<String>() {
+            @Override
+            public Object getKey(String item) {
+                return item;
+            }
+        });
+
+        assertFalse(adapter.updateItem("4", "4:new"));
+        assertTrue(adapter.updateItem("4:v", "4:new"));
+        assertEquals(Arrays.asList("changed 4,1"), observer.events);
+    }
+}
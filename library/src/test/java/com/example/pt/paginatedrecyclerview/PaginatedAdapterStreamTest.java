@@ -0,0 +1,135 @@
+package com.example.pt.paginatedrecyclerview;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import pt.consipere.paginatedrecyclerview.BuildConfig;
+import pt.consipere.paginatedrecyclerview.PaginatedAdapter;
+
+import static org.junit.Assert.*;
+import static pt.consipere.paginatedrecyclerview.RecyclerViewScrollListener.LOAD_DOWN;
+import static pt.consipere.paginatedrecyclerview.RecyclerViewScrollListener.LOAD_UP;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PaginatedAdapterStreamTest {
+
+    private TestPaginatedAdapter adapter;
+    private RecordingObserver observer;
+
+    @Before
+    public void setUp() throws Exception {
+        adapter = new TestPaginatedAdapter(3);
+        adapter.setMaxPagesInMemory(3);
+        adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(0, 3));
+        observer = new RecordingObserver();
+        adapter.registerAdapterDataObserver(observer);
+    }
+
+    @Test
+    public void appendedRowsAreShownRightAwayWhenLoadingDown() throws Exception {
+        adapter.setLoadingDirection(LOAD_DOWN);
+        observer.events.clear();
+
+        PaginatedAdapter<String>.PageStream stream = adapter.openPage();
+        stream.append(TestPaginatedAdapter.page(3, 2));
+        stream.append(TestPaginatedAdapter.page(5, 1));
+        stream.seal();
+
+        assertFalse(stream.isOpen());
+        assertEquals(Arrays.asList("inserted 3,2", "inserted 5,1"), observer.events);
+        assertEquals("5:v", adapter.getItemAt(5));
+        assertEquals(6, adapter.getNextRange(LOAD_DOWN).from);
+        assertTrue(adapter.updateItem("4", "4:new"));
+    }
+
+    @Test
+    public void firstPageOfAnEmptyListIsNotInsertedAboveTheLoadingRow() throws Exception {
+        adapter.clearAll();
+        adapter.setLoadingDirection(LOAD_DOWN);
+        observer.events.clear();
+
+        PaginatedAdapter<String>.PageStream stream = adapter.openPage();
+        stream.append(TestPaginatedAdapter.page(0, 2));
+        stream.append(TestPaginatedAdapter.page(2, 1));
+
+        assertEquals(Arrays.asList("changed", "inserted 2,1"), observer.events);
+        assertEquals("0:v", adapter.getItemAt(0));
+    }
+
+    @Test
+    public void appendedRowsAreAddedOnSealWhenLoadingUp() throws Exception {
+        adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(3, 3));
+        adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(6, 3));
+        adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(9, 3));
+        adapter.setLoadingDirection(LOAD_UP);
+        assertEquals(3, adapter.getOffset());
+
+        PaginatedAdapter<String>.PageStream stream = adapter.openPage();
+        stream.append(TestPaginatedAdapter.page(0, 2));
+        stream.append(TestPaginatedAdapter.page(2, 1));
+        assertEquals(3, adapter.getOffset());
+
+        stream.seal();
+        assertEquals(0, adapter.getOffset());
+        assertEquals("0:v", adapter.getItemAt(0));
+        assertEquals("2:v", adapter.getItemAt(2));
+    }
+
+    @Test
+    public void appendsAfterClearAllAreIgnored() throws Exception {
+        adapter.setLoadingDirection(LOAD_DOWN);
+        PaginatedAdapter<String>.PageStream stream = adapter.openPage();
+        stream.append(TestPaginatedAdapter.page(3, 2));
+
+        adapter.clearAll();
+        stream.append(TestPaginatedAdapter.page(5, 1));
+        stream.seal();
+
+        assertFalse(stream.isOpen());
+        assertEquals(0, adapter.getRealCount());
+
+        PaginatedAdapter<String>.PageStream refreshed = adapter.openPage();
+        refreshed.append(TestPaginatedAdapter.page(0, 2));
+        refreshed.seal();
+        assertEquals(2, adapter.getRealCount());
+        assertEquals("1:v", adapter.getItemAt(1));
+    }
+
+    @Test
+    public void streamIsClosedWhenItsPageIsEvicted() throws Exception {
+        adapter.setMaxPagesInMemory(2);
+        adapter.setLoadingDirection(LOAD_DOWN);
+        PaginatedAdapter<String>.PageStream stream = adapter.openPage();
+        stream.append(TestPaginatedAdapter.page(3, 3));
+
+        //scrolling back up removes the last page, the one being streamed
+        adapter.setLoadingDirection(LOAD_UP);
+        assertFalse(stream.isOpen());
+
+        stream.append(TestPaginatedAdapter.page(6, 1));
+        assertEquals(3, adapter.getRealCount());
+        assertEquals(3, adapter.getNextRange(LOAD_DOWN).from);
+    }
+
+    @Test
+    public void openingAPageSealsThePreviousOne() throws Exception {
+        adapter.setLoadingDirection(LOAD_DOWN);
+        PaginatedAdapter<String>.PageStream first = adapter.openPage();
+        first.append(TestPaginatedAdapter.page(3, 3));
+
+        PaginatedAdapter<String>.PageStream second = adapter.openPage();
+        first.append(TestPaginatedAdapter.page(100, 1));
+        second.append(TestPaginatedAdapter.page(6, 1));
+
+        assertFalse(first.isOpen());
+        assertTrue(second.isOpen());
+        assertEquals(7, adapter.getRealCount());
+        assertEquals("6:v", adapter.getItemAt(6));
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.pt.paginatedrecyclerview;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import pt.consipere.paginatedrecyclerview.BuildConfig;
+
+import static org.junit.Assert.*;
+import static pt.consipere.paginatedrecyclerview.RecyclerViewScrollListener.LOAD_DOWN;
+import static pt.consipere.paginatedrecyclerview.RecyclerViewScrollListener.LOAD_UP;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PaginatedAdapterTrimTest {
+
+    private TestPaginatedAdapter adapter;
+    private RecordingObserver observer;
+
+    /**
+     * Loads the pages 0-2, 3-5, 6-8 and 9-11
+     */
+    @Before
+    public void setUp() throws Exception {
+        adapter = new TestPaginatedAdapter(3);
+        adapter.setMaxPagesInMemory(4);
+        for (int i = 0; i < 4; i++) {
+            adapter.loadPage(LOAD_DOWN, TestPaginatedAdapter.page(i * 3, 3));
+        }
+        observer = new RecordingObserver();
+        adapter.registerAdapterDataObserver(observer);
+
+        assertEquals(12, adapter.getItemCount());
+    }
+
+    @Test
+    public void removingPagesAboveTheViewportKeepsTheItemCount() throws Exception {
+        adapter.setMaxPagesInMemory(2);
+        adapter.trimPages(7, 8);
+
+        assertEquals(12, adapter.getItemCount());
+        assertEquals(6, adapter.getOffset());
+        assertEquals("7:v", adapter.getItemAt(7));
+        assertEquals(Arrays.asList("changed 0,3", "changed 3,3"), observer.events);
+    }
+
+    @Test
+    public void removingPagesBelowTheViewportRemovesTheirRows() throws Exception {
+        adapter.setMaxPagesInMemory(2);
+        adapter.trimPages(1, 2);
+
+        assertEquals(6, adapter.getItemCount());
+        assertEquals(0, adapter.getOffset());
+        assertEquals(Arrays.asList("removed 9,3", "removed 6,3"), observer.events);
+    }
+
+    @Test
+    public void removesThePageFurthestFromTheViewportFirst() throws Exception {
+        adapter.setMaxPagesInMemory(3);
+        adapter.trimPages(4, 5);
+
+        assertEquals(3, adapter.getAllPages().size());
+        assertEquals(Arrays.asList("removed 9,3"), observer.events);
+    }
+
+    @Test
+    public void keepsThePageNextToALoadDown() throws Exception {
+        adapter.setLoadingDirection(LOAD_DOWN);
+        observer.events.clear();
+        adapter.setMaxPagesInMemory(1);
+        adapter.trimPages(7, 8);
+
+        assertEquals(2, adapter.getAllPages().size());
+        assertEquals("11:v", adapter.getItemAt(11));
+        assertEquals(Arrays.asList("changed 3,3"), observer.events);
+    }
+
+    @Test
+    public void keepsThePageNextToALoadUp() throws Exception {
+        adapter.setLoadingDirection(LOAD_UP);
+        observer.events.clear();
+        adapter.setMaxPagesInMemory(1);
+        adapter.trimPages(3, 4);
+
+        assertEquals(2, adapter.getAllPages().size());
+        assertEquals(0, adapter.getOffset());
+        assertEquals(Arrays.asList("removed 6,3"), observer.events);
+    }
+
+    @Test
+    public void neverRemovesVisiblePages() throws Exception {
+        adapter.setMaxPagesInMemory(1);
+        adapter.trimPages(2, 9);
+
+        assertEquals(4, adapter.getAllPages().size());
+        assertTrue(observer.events.isEmpty());
+    }
+}
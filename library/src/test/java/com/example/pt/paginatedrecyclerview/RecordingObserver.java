@@ -0,0 +1,34 @@
+package com.example.pt.paginatedrecyclerview;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the notifications sent by an adapter as strings such as "inserted 20,5"
+ */
+public class RecordingObserver extends RecyclerView.AdapterDataObserver {
+
+    public final List<String> events = new ArrayList<>();
+
+    @Override
+    public void onChanged() {
+        events.add("changed");
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        events.add("changed " + positionStart + "," + itemCount);
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        events.add("inserted " + positionStart + "," + itemCount);
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        events.add("removed " + positionStart + "," + itemCount);
+    }
+}
@@ -0,0 +1,382 @@
+package com.example.pt.paginatedrecyclerview;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import pt.consipere.paginatedrecyclerview.PageRepository;
+import pt.consipere.paginatedrecyclerview.PaginatedAdapter;
+import pt.consipere.paginatedrecyclerview.PaginatedRecyclerView;
+import pt.consipere.paginatedrecyclerview.R;
+import pt.consipere.paginatedrecyclerview.Range;
+import pt.consipere.paginatedrecyclerview.RecyclerViewScrollListener;
+
+/**
+ * Drives a {@link PaginatedRecyclerView} inside an activity with scripted scrolls on the JVM and
+ * counts the work that is done on the way. The scrolls go through the real RecyclerView, so the
+ * layout manager of {@link PaginatedRecyclerView}, its scroll listener and the loading routing of
+ * the view (listeners, {@link PageRepository}, adaptive page size) are all exercised.
+ *
+ * Every step of a script is one frame: the scroll is applied, the main looper is advanced by
+ * {@link #FRAME_MS} (delivering the fake loads that are due and running the fling animation) and
+ * the list is laid out again, so the results only depend on the script and on the configured
+ * latency.
+ */
+public class ScrollSimulationHarness {
+
+    public static final int WIDTH = 480;
+    public static final int HEIGHT = 800;
+    public static final int ROW_HEIGHT = 100;
+    public static final long FRAME_MS = 16;
+
+    private final PaginatedRecyclerView paginatedRecyclerView;
+    private final CountingAdapter adapter = new CountingAdapter();
+    private final Handler handler = new Handler();
+    private final long latencyMs;
+    private final int dataSize;
+
+    private final Set<Range> fetchedRanges = new HashSet<>();
+    private Set<List<Integer>> pagesInMemory =
+            Collections.newSetFromMap(new IdentityHashMap<List<Integer>, Boolean>());
+    private final List<Long> frameTimes = new ArrayList<>();
+
+    private int loadsIssued = 0;
+    private int duplicateLoads = 0;
+    private int evictions = 0;
+    private int fullRebinds = 0;
+
+    /**
+     * @param latencyMs the time the fake loader takes to deliver a page
+     * @param dataSize the number of items of the fake data source
+     */
+    public ScrollSimulationHarness(Activity activity, Options options, long latencyMs,
+                                   int dataSize) {
+        this.latencyMs = latencyMs;
+        this.dataSize = dataSize;
+
+        AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.pageSize, String.valueOf(options.pageSize))
+                .addAttribute(R.attr.maxPagesInMem, String.valueOf(options.maxPagesInMemory))
+                .addAttribute(R.attr.loadOffset, String.valueOf(options.loadOffset))
+                .addAttribute(R.attr.layoutMoreProgress, "@layout/row_progress")
+                .addAttribute(R.attr.adaptivePageSize, String.valueOf(options.adaptivePageSize))
+                .addAttribute(R.attr.chunkedPublishing, String.valueOf(options.chunkedPublishing))
+                .build();
+        paginatedRecyclerView = new PaginatedRecyclerView(activity, attrs);
+        activity.setContentView(paginatedRecyclerView, new ViewGroup.LayoutParams(WIDTH, HEIGHT));
+
+        if (options.repository) {
+            adapter.setPageRepository(PageRepository.get(this, new PageRepository.PageLoader<Integer>() {
+                @Override
+                public void loadPage(Range range, PageRepository.Callback<Integer> callback) {
+                    fetch(range, callback);
+                }
+            }));
+
+        } else {
+            paginatedRecyclerView.setLoadMoreBottomListener(
+                    new PaginatedRecyclerView.OnLoadMoreBottomListener() {
+                        @Override
+                        public void onLoadMore() {
+                            load(RecyclerViewScrollListener.LOAD_DOWN);
+                        }
+                    });
+            paginatedRecyclerView.setLoadMoreTopListener(
+                    new PaginatedRecyclerView.OnLoadMoreTopListener() {
+                        @Override
+                        public void onLoadMore() {
+                            load(RecyclerViewScrollListener.LOAD_UP);
+                        }
+                    });
+        }
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                fullRebinds++;
+            }
+        });
+        paginatedRecyclerView.setAdapter(adapter);
+    }
+
+    /**
+     * Loads the first page and waits for it to be shown
+     */
+    public void start() {
+        if (adapter.getPageRepository() != null) {
+            paginatedRecyclerView.loadFromRepository(RecyclerViewScrollListener.LOAD_DOWN);
+
+        } else {
+            load(RecyclerViewScrollListener.LOAD_DOWN);
+        }
+        idle(latencyMs + FRAME_MS);
+    }
+
+    public void slowDrag(int frames, int dyPerFrame) {
+        for (int i = 0; i < frames; i++) {
+            frame(dyPerFrame);
+        }
+    }
+
+    /**
+     * Starts a fling and runs frames until the list stops or maxFrames is reached
+     */
+    public void fling(int velocityY, int maxFrames) {
+        getRecyclerView().fling(0, velocityY);
+        for (int i = 0; i < maxFrames
+                && getRecyclerView().getScrollState() != RecyclerView.SCROLL_STATE_IDLE; i++) {
+            frame(0);
+        }
+    }
+
+    public void directionReversal(int frames, int dyPerFrame) {
+        slowDrag(frames, dyPerFrame);
+        slowDrag(frames, -dyPerFrame);
+    }
+
+    /**
+     * Jumps to a few items after the offset of the adapter and then scrolls up across it
+     */
+    public void jumpNearOffset(int itemsAfterOffset, int frames, int dyPerFrame) {
+        getLayoutManager().scrollToPositionWithOffset(adapter.getOffset() + itemsAfterOffset, 0);
+        frame(0);
+        slowDrag(frames, -Math.abs(dyPerFrame));
+    }
+
+    /**
+     * Advances the main looper without scrolling, for example to let pending loads arrive
+     */
+    public void idle(long ms) {
+        for (long elapsed = 0; elapsed < ms; elapsed += FRAME_MS) {
+            frame(0);
+        }
+    }
+
+    private void frame(int dy) {
+        long start = System.nanoTime();
+        if (dy != 0) {
+            getRecyclerView().scrollBy(0, dy);
+        }
+        ShadowLooper.idleMainLooper(FRAME_MS);
+        layout();
+        frameTimes.add(System.nanoTime() - start);
+        countEvictions();
+    }
+
+    private void layout() {
+        paginatedRecyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        paginatedRecyclerView.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private void countEvictions() {
+        Set<List<Integer>> current =
+                Collections.newSetFromMap(new IdentityHashMap<List<Integer>, Boolean>());
+        current.addAll(adapter.getAllPages());
+        for (List<Integer> page : pagesInMemory) {
+            if (!current.contains(page)) {
+                evictions++;
+            }
+        }
+        pagesInMemory = current;
+    }
+
+    /**
+     * Loads the next range through the listeners of the view, adding the items the same way the
+     * sample application does
+     */
+    private void load(int direction) {
+        fetch(adapter.getNextRange(direction), new PageRepository.Callback<Integer>() {
+            @Override
+            public void onPageLoaded(Range range, List<Integer> page) {
+                if (!page.isEmpty()) {
+                    adapter.addElements(page);
+                }
+                paginatedRecyclerView.setRefreshing(false);
+                paginatedRecyclerView.setLoading(false);
+                if (!adapter.isChunkedPublishing()) {
+                    adapter.notifyDataSetChanged();
+                }
+            }
+
+            @Override
+            public void onError(Range range, Throwable error) {
+                paginatedRecyclerView.setLoading(false);
+            }
+        });
+    }
+
+    /**
+     * Fake data source: delivers the range after {@link #latencyMs} on the main thread. Counts
+     * the ranges that are fetched more than once during the whole run (for example because they
+     * were evicted and are needed again).
+     */
+    private void fetch(final Range range, final PageRepository.Callback<Integer> callback) {
+        loadsIssued++;
+        if (!fetchedRanges.add(range)) {
+            duplicateLoads++;
+        }
+
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                List<Integer> items = new ArrayList<>();
+                for (int i = Math.max(0, range.from); i <= range.to && i < dataSize; i++) {
+                    items.add(i);
+                }
+                callback.onPageLoaded(range, items);
+            }
+        }, latencyMs);
+    }
+
+    public RecyclerView getRecyclerView() {
+        return paginatedRecyclerView.getRecyclerView();
+    }
+
+    private LinearLayoutManager getLayoutManager() {
+        return (LinearLayoutManager) getRecyclerView().getLayoutManager();
+    }
+
+    public PaginatedAdapter<Integer> getAdapter() {
+        return adapter;
+    }
+
+    public int getFirstVisiblePosition() {
+        return getLayoutManager().findFirstVisibleItemPosition();
+    }
+
+    public boolean isLoading() {
+        return paginatedRecyclerView.isLoading();
+    }
+
+    /**
+     * @return true if the rows laid out show the items of the adapter at their positions
+     */
+    public boolean isShowingAdapterItems() {
+        RecyclerView recyclerView = getRecyclerView();
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            View child = recyclerView.getChildAt(i);
+            int position = recyclerView.getChildAdapterPosition(child) - adapter.getOffset();
+            if (position >= 0 && position < adapter.getRealCount() && child.getTag() != null
+                    && !adapter.getItem(position).equals(child.getTag())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Report getReport() {
+        return new Report();
+    }
+
+    /**
+     * Configuration of the simulated list
+     */
+    public static class Options {
+        private int pageSize = 20;
+        private int maxPagesInMemory = 3;
+        private int loadOffset = 5;
+        private boolean repository = false;
+        private boolean adaptivePageSize = false;
+        private boolean chunkedPublishing = false;
+
+        public Options pages(int pageSize, int maxPagesInMemory, int loadOffset) {
+            this.pageSize = pageSize;
+            this.maxPagesInMemory = maxPagesInMemory;
+            this.loadOffset = loadOffset;
+            return this;
+        }
+
+        /**
+         * Loads the pages through a {@link PageRepository} instead of the listeners of the view
+         */
+        public Options repository() {
+            repository = true;
+            return this;
+        }
+
+        public Options adaptivePageSize() {
+            adaptivePageSize = true;
+            return this;
+        }
+
+        public Options chunkedPublishing() {
+            chunkedPublishing = true;
+            return this;
+        }
+    }
+
+    /**
+     * Snapshot of the counters of the harness
+     */
+    public class Report {
+        public final int loadsIssued = ScrollSimulationHarness.this.loadsIssued;
+        /** Ranges that were fetched more than once during the whole run */
+        public final int duplicateLoads = ScrollSimulationHarness.this.duplicateLoads;
+        public final int evictions = ScrollSimulationHarness.this.evictions;
+        public final int createCalls = adapter.createCalls;
+        public final int bindCalls = adapter.bindCalls;
+        public final int fullRebinds = ScrollSimulationHarness.this.fullRebinds;
+        public final int frames = frameTimes.size();
+        public final long maxFrameNanos;
+        public final long averageFrameNanos;
+
+        private Report() {
+            long max = 0;
+            long total = 0;
+            for (long time : frameTimes) {
+                max = Math.max(max, time);
+                total += time;
+            }
+            maxFrameNanos = max;
+            averageFrameNanos = frameTimes.isEmpty() ? 0 : total / frameTimes.size();
+        }
+
+        @Override
+        public String toString() {
+            return "loads=" + loadsIssued
+                    + " duplicateLoads=" + duplicateLoads
+                    + " evictions=" + evictions
+                    + " onCreatePageViewHolder=" + createCalls
+                    + " onBindPageViewHolder=" + bindCalls
+                    + " fullRebinds=" + fullRebinds
+                    + " frames=" + frames
+                    + " avgFrameUs=" + averageFrameNanos / 1000
+                    + " maxFrameUs=" + maxFrameNanos / 1000;
+        }
+    }
+
+    private static class CountingAdapter extends PaginatedAdapter<Integer> {
+        private int createCalls = 0;
+        private int bindCalls = 0;
+
+        @Override
+        public void onBindPageViewHolder(RecyclerView.ViewHolder holder, int position) {
+            bindCalls++;
+            holder.itemView.setTag(getItem(position));
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreatePageViewHolder(ViewGroup parent, int viewType) {
+            createCalls++;
+            View view = new View(parent.getContext());
+            view.setLayoutParams(new RecyclerView.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ROW_HEIGHT));
+            return new RecyclerView.ViewHolder(view) {};
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.pt.paginatedrecyclerview;
+
+import android.app.Activity;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import pt.consipere.paginatedrecyclerview.BuildConfig;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scripted scrolls over {@link ScrollSimulationHarness}. The counters of each script are printed
+ * so they can be compared between changes to the scroll listener, the layout manager and the
+ * adapter.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ScrollSimulationTest {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int MAX_PAGES = 3;
+    private static final int LOAD_OFFSET = 5;
+    private static final long LATENCY_MS = 200;
+    private static final int DATA_SIZE = 1000;
+
+    private Activity activity;
+    private ScrollSimulationHarness harness;
+
+    @Before
+    public void setUp() throws Exception {
+        activity = Robolectric.setupActivity(Activity.class);
+    }
+
+    @Test
+    public void slowDrag() throws Exception {
+        start(new ScrollSimulationHarness.Options());
+        harness.slowDrag(300, 20);
+        ScrollSimulationHarness.Report report = report("slowDrag");
+
+        assertTrue(report.loadsIssued > 1);
+        assertTrue(report.evictions > 0);
+    }
+
+    @Test
+    public void fastFling() throws Exception {
+        start(new ScrollSimulationHarness.Options());
+        harness.fling(20000, 600);
+        harness.idle(LATENCY_MS * 2);
+        ScrollSimulationHarness.Report report = report("fastFling");
+
+        assertTrue(report.loadsIssued > 1);
+    }
+
+    @Test
+    public void directionReversal() throws Exception {
+        start(new ScrollSimulationHarness.Options());
+        harness.directionReversal(200, 60);
+        harness.idle(LATENCY_MS * 2);
+        report("directionReversal");
+    }
+
+    @Test
+    public void jumpNearOffset() throws Exception {
+        start(new ScrollSimulationHarness.Options());
+        harness.slowDrag(200, 60);
+        harness.idle(LATENCY_MS * 2);
+        int offset = harness.getAdapter().getOffset();
+        assertTrue(offset > 0);
+
+        harness.jumpNearOffset(2, 100, 40);
+        harness.idle(LATENCY_MS * 2);
+        report("jumpNearOffset");
+
+        assertTrue(harness.getAdapter().getOffset() < offset);
+        //the layout manager never lets the list scroll above the offset
+        assertTrue(harness.getFirstVisiblePosition() >= harness.getAdapter().getOffset() - 1);
+    }
+
+    @Test
+    public void chunkedPublishing() throws Exception {
+        start(new ScrollSimulationHarness.Options().chunkedPublishing());
+        harness.directionReversal(200, 60);
+        harness.idle(LATENCY_MS * 2);
+        ScrollSimulationHarness.Report report = report("chunkedPublishing");
+
+        //only the first page, published while nothing is shown, notifies the whole data set
+        assertEquals(1, report.fullRebinds);
+    }
+
+    @Test
+    public void repositoryWithAdaptivePageSize() throws Exception {
+        start(new ScrollSimulationHarness.Options().repository().adaptivePageSize());
+        harness.directionReversal(200, 60);
+        harness.idle(LATENCY_MS * 2);
+        ScrollSimulationHarness.Report report = report("repositoryWithAdaptivePageSize");
+
+        assertTrue(report.loadsIssued > 1);
+        //the pages of a repository always have the fixed size
+        for (List<Integer> page : harness.getAdapter().getAllPages()) {
+            assertEquals(PAGE_SIZE, page.size());
+        }
+    }
+
+    @Test
+    public void adaptivePageSize() throws Exception {
+        start(new ScrollSimulationHarness.Options().adaptivePageSize());
+        harness.fling(20000, 600);
+        harness.idle(LATENCY_MS * 2);
+        report("adaptivePageSize");
+    }
+
+    private void start(ScrollSimulationHarness.Options options) {
+        harness = new ScrollSimulationHarness(activity,
+                options.pages(PAGE_SIZE, MAX_PAGES, LOAD_OFFSET), LATENCY_MS, DATA_SIZE);
+        harness.start();
+    }
+
+    /**
+     * Prints the counters and checks the invariants that every script must keep
+     */
+    private ScrollSimulationHarness.Report report(String script) {
+        ScrollSimulationHarness.Report report = harness.getReport();
+        System.out.println(script + ": " + report);
+
+        assertFalse(harness.isLoading());
+        assertTrue(harness.isShowingAdapterItems());
+        assertTrue(harness.getAdapter().getAllPages().size() <= MAX_PAGES);
+        return report;
+    }
+}
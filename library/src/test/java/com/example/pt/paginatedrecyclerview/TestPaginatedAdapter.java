@@ -0,0 +1,64 @@
+package com.example.pt.paginatedrecyclerview;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pt.consipere.paginatedrecyclerview.PaginatedAdapter;
+import pt.consipere.paginatedrecyclerview.RecyclerViewScrollListener;
+
+/**
+ * Adapter used by the unit tests. The items are strings with the format "key:value" and the key
+ * of each item is the part before the ':'.
+ */
+public class TestPaginatedAdapter extends PaginatedAdapter<String> {
+
+    public TestPaginatedAdapter(int pageSize) {
+        setPageSize(pageSize);
+        setKeyProvider(new KeyProvider<String>() {
+            @Override
+            public Object getKey(String item) {
+                return item.substring(0, item.indexOf(':'));
+            }
+        });
+    }
+
+    /**
+     * @return count items with the keys from, from + 1, ... and the value "v"
+     */
+    public static List<String> page(int from, int count) {
+        List<String> page = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            page.add(i + ":v");
+        }
+        return page;
+    }
+
+    /**
+     * Adds a page the same way it is done after loading it in the given direction
+     */
+    public void loadPage(int direction, List<String> page) {
+        setLoadingDirection(direction);
+        addElements(page);
+        setLoadingDirection(RecyclerViewScrollListener.NOT_LOADING);
+    }
+
+    /**
+     * @return the item at the simulated position
+     */
+    public String getItemAt(int position) {
+        return getItem(position - getOffset());
+    }
+
+    @Override
+    public void onBindPageViewHolder(RecyclerView.ViewHolder holder, int position) {
+    }
+
+    @Override
+    public RecyclerView.ViewHolder onCreatePageViewHolder(ViewGroup parent, int viewType) {
+        return new RecyclerView.ViewHolder(new View(parent.getContext())) {};
+    }
+}
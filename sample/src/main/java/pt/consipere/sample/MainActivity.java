@@ -39,10 +39,11 @@ public class MainActivity extends AppCompatActivity implements SwipeRefreshLayou
     @Override
     public void onRefresh() {
         adapter.clearAll();
+        adapter.notifyDataSetChanged();
         new LoadItems(adapter.getNextRange(LOAD_DOWN)).execute();
     }
 
-    private class LoadItems extends AsyncTask<Void, Void, Void> {
+    private class LoadItems extends AsyncTask<Void, Void, List<Integer>> {
         private Range range;
 
         public LoadItems(Range range){
@@ -50,18 +51,21 @@ public class MainActivity extends AppCompatActivity implements SwipeRefreshLayou
         }
 
         @Override
-        protected Void doInBackground(Void... params) {
-            List<Integer> items = ItemFeed.getInstance().getItemsRange(range);
-            adapter.addElements(items);
-            return null;
+        protected List<Integer> doInBackground(Void... params) {
+            return ItemFeed.getInstance().getItemsRange(range);
         }
 
         @Override
-        protected void onPostExecute(Void aVoid) {
-            super.onPostExecute(aVoid);
+        protected void onPostExecute(List<Integer> items) {
+            super.onPostExecute(items);
+            //the adapter must only be changed on the main thread
+            adapter.addElements(items);
             paginatedRecyclerView.setRefreshing(false);
             paginatedRecyclerView.setLoading(false);
-            adapter.notifyDataSetChanged();
+            //with chunked publishing the adapter notifies the new rows itself
+            if (!adapter.isChunkedPublishing()) {
+                adapter.notifyDataSetChanged();
+            }
         }
     }
 }